@@ -0,0 +1,175 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.benchmarks;
+
+import com.invirgance.convirgance.json.JSONArray;
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.example.todo.TodoList;
+import com.invirgance.example.todo.TodoList.Status;
+import com.invirgance.example.todo.TodoListParameter;
+import com.invirgance.example.todo.TodoTools;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks rendering the list for the model: the markdown table with and
+ * without relative dates, the prompt parameter, and the newest and oldest
+ * tools. Variants ending in "AfterWrite" modify the list first so the
+ * snapshot caches can't answer. The benchmarks use the default list, which
+ * is the one TodoListParameter selects when no partition is configured.
+ * Each benchmark runs in its own fork, so the list starts out fresh.
+ *
+ * @author jbanes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark
+{
+    @Param({"25", "1000", "10000"})
+    public int size;
+    
+    private TodoTools tools;
+    private TodoListParameter table;
+    private TodoListParameter compact;
+    private JSONArray<JSONObject> records;
+    private long toggle;
+    
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        long now = System.currentTimeMillis();
+        
+        tools = new TodoTools();
+        table = new TodoListParameter();
+        compact = new TodoListParameter();
+        
+        compact.setFormat("compact");
+        new TodoList().setCapacity(size);
+        
+        for(int i=0; i<size; i++)
+        {
+            long id = TodoList.insert("Benchmark task number " + i);
+            
+            if(i % 4 == 0) TodoList.update(id, Status.DONE);
+        }
+        
+        // Records with spread out times exercise every unit of the relative dates
+        records = new JSONArray<>();
+        
+        for(int i=0; i<size; i++)
+        {
+            var record = new JSONObject();
+            
+            record.put("id", (long)i);
+            record.put("text", "Benchmark task number " + i);
+            record.put("state", Status.TODO.toString());
+            record.put("created", now - i * 7_777_777L);
+            record.put("updated", now - i * 3_333_333L);
+            
+            records.add(record);
+        }
+    }
+    
+    private void write()
+    {
+        TodoList.update(1 + (toggle++ % size), (toggle % 2 == 0) ? Status.DOING : Status.TODO);
+    }
+    
+    @Benchmark
+    public String table()
+    {
+        return TodoTools.table(records, false);
+    }
+    
+    /**
+     * Extended tables format two relative dates per row, so this covers the
+     * date formatting as well
+     *
+     * @return the rendered table
+     */
+    @Benchmark
+    public String tableExtended()
+    {
+        return TodoTools.table(records, true);
+    }
+    
+    @Benchmark
+    public Object parameter()
+    {
+        return table.getValue(null);
+    }
+    
+    @Benchmark
+    public Object parameterAfterWrite()
+    {
+        write();
+        
+        return table.getValue(null);
+    }
+    
+    @Benchmark
+    public Object parameterCompactAfterWrite()
+    {
+        write();
+        
+        return compact.getValue(null);
+    }
+    
+    @Benchmark
+    public String newest()
+    {
+        return tools.newestList(5);
+    }
+    
+    @Benchmark
+    public String newestAfterWrite()
+    {
+        write();
+        
+        return tools.newestList(5);
+    }
+    
+    @Benchmark
+    public String oldestAfterWrite()
+    {
+        write();
+        
+        return tools.oldestList(5);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.benchmarks;
+
+import com.invirgance.example.todo.LRUEvictionPolicy;
+import com.invirgance.example.todo.TodoList.Status;
+import com.invirgance.example.todo.TodoStore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the TodoStore operations against lists of different sizes. Each
+ * trial creates its own store rather than configuring the shared TodoList
+ * partitions, so trials neither interfere nor leave state behind. The
+ * contended variants run on as many threads as there are processors. Run
+ * with -t to try other thread counts.
+ *
+ * @author jbanes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TodoStoreBenchmark
+{
+    @Param({"25", "1000", "100000"})
+    public int size;
+    
+    private TodoStore store;
+    private long first;
+    
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        store = new TodoStore(size);
+        
+        store.setEviction(new LRUEvictionPolicy());
+        
+        for(int i=0; i<size; i++)
+        {
+            long id = store.insert("Benchmark task number " + i, System.currentTimeMillis());
+            
+            if(i == 0) first = id;
+            if(i % 3 == 0) store.update(id, Status.DONE, System.currentTimeMillis());
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void teardown()
+    {
+        store.close();
+    }
+    
+    private long randomId()
+    {
+        // Ids are dense, but eviction during insert benchmarks moves the window
+        long newest = store.snapshot().getNext() - 1;
+        long oldest = Math.max(first, newest - size + 1);
+        
+        return oldest + ThreadLocalRandom.current().nextLong(newest - oldest + 1);
+    }
+    
+    @Benchmark
+    public Object get()
+    {
+        return store.get(randomId());
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object getContended()
+    {
+        return store.get(randomId());
+    }
+    
+    @Benchmark
+    public Object update()
+    {
+        return store.update(randomId(), ThreadLocalRandom.current().nextBoolean() ? Status.DOING : Status.TODO, System.currentTimeMillis());
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object updateContended()
+    {
+        return store.update(randomId(), ThreadLocalRandom.current().nextBoolean() ? Status.DOING : Status.TODO, System.currentTimeMillis());
+    }
+    
+    /**
+     * Inserts into a full list, so every insert evicts the least recently
+     * updated task through the eviction policy.
+     *
+     * @return the id of the new task
+     */
+    @Benchmark
+    public long insertAtCapacity()
+    {
+        return store.insert("Inserted task", System.currentTimeMillis());
+    }
+    
+    /**
+     * Iterates the shared snapshot. The snapshot is only rebuilt after a
+     * write, so this measures the read path alone.
+     *
+     * @param blackhole consumes the records
+     */
+    @Benchmark
+    public void list(Blackhole blackhole)
+    {
+        for(var record : store.snapshot()) blackhole.consume(record);
+    }
+    
+    /**
+     * Writes before iterating, so every iteration rebuilds the snapshot
+     *
+     * @param blackhole consumes the records
+     */
+    @Benchmark
+    public void listAfterWrite(Blackhole blackhole)
+    {
+        store.update(randomId(), Status.DOING, System.currentTimeMillis());
+        
+        for(var record : store.snapshot()) blackhole.consume(record);
+    }
+    
+    @Benchmark
+    public Object listByState()
+    {
+        return store.list(Status.DONE);
+    }
+}
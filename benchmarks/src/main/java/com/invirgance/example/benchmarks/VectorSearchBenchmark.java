@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.benchmarks;
+
+import com.invirgance.example.ai.documents.EmbeddingIndex;
+import com.invirgance.example.ai.documents.ExactVectorSearch;
+import com.invirgance.example.ai.documents.HnswVectorSearch;
+import com.invirgance.example.ai.documents.OllamaEmbedder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks retrieving the top five chunks with the exact and the HNSW
+ * searches. The vectors are random points around a few hundred centers, so
+ * the data has the clustered structure of real embeddings. The fork enables
+ * the Vector API, so the SIMD dot product is measured.
+ *
+ * @author jbanes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorSearchBenchmark
+{
+    private static final int QUERIES = 1024;
+    
+    @Param({"10000", "100000"})
+    public int size;
+    
+    @Param({"384"})
+    public int dimensions;
+    
+    private Path file;
+    private ExactVectorSearch exact;
+    private HnswVectorSearch hnsw;
+    private float[][] queries;
+    private int next;
+    
+    private float[] point(SplittableRandom random, float[][] centers)
+    {
+        var center = centers[random.nextInt(centers.length)];
+        var vector = new float[dimensions];
+        
+        for(int i=0; i<dimensions; i++) vector[i] = center[i] + (float)random.nextGaussian(0, 0.5);
+        
+        OllamaEmbedder.normalize(vector);
+        
+        return vector;
+    }
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        var random = new SplittableRandom(42);
+        var centers = new float[256][dimensions];
+        var texts = new ArrayList<String>();
+        var vectors = new float[size][];
+        EmbeddingIndex index;
+        
+        for(var center : centers)
+        {
+            for(int i=0; i<dimensions; i++) center[i] = (float)random.nextGaussian();
+        }
+        
+        for(int i=0; i<size; i++)
+        {
+            texts.add("Chunk " + i);
+            vectors[i] = point(random, centers);
+        }
+        
+        queries = new float[QUERIES][];
+        
+        for(int i=0; i<QUERIES; i++) queries[i] = point(random, centers);
+        
+        file = Files.createTempFile("benchmark", ".embeddings");
+        index = EmbeddingIndex.write(file, "benchmark", texts, vectors);
+        exact = new ExactVectorSearch();
+        hnsw = new HnswVectorSearch();
+        
+        exact.index(index);
+        hnsw.index(index);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(file);
+    }
+    
+    private float[] query()
+    {
+        return queries[next++ & (QUERIES - 1)];
+    }
+    
+    @Benchmark
+    public int[] exact()
+    {
+        return exact.search(query(), 5, 0);
+    }
+    
+    @Benchmark
+    public int[] hnsw()
+    {
+        return hnsw.search(query(), 5, 0);
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the /services endpoints of a running instance of the application
+ * with a fixed number of concurrent users and reports the throughput and
+ * latency percentiles of each service. Unless disabled, a StubOllama is
+ * started in the same process on the Ollama port, so the numbers reflect
+ * the framework and tool overhead plus the simulated model time rather than
+ * the speed of a GPU.
+ * <br><br>
+ * Options are given as --name=value. Run with --help for the list.
+ *
+ * @author jbanes
+ */
+public class LoadTest
+{
+    private static final String[] QUESTIONS = {
+        "What color is the sky?",
+        "How do I get started with Convirgance?",
+        "What is Convirgance (Web Services)?",
+        "How much wood could a woodchuck chuck?",
+        "How do I filter data?",
+        "What file formats are supported?",
+        "Add a task to buy milk",
+        "What tasks are still open?",
+        "Mark the newest task as done",
+        "Which tasks are related to the load test?"
+    };
+    
+    private static final String[][] OPTIONS = {
+        {"url", "http://localhost:8080/ai/", "Base URL of the application"},
+        {"services", "silly,docs,character,todo,list", "Services to drive in rotation: silly, docs, character, todo, list"},
+        {"concurrency", "16", "Number of concurrent users"},
+        {"warmup", "10", "Seconds to run before measuring"},
+        {"duration", "30", "Seconds to measure"},
+        {"requests", "0", "Stop after this many measured requests. 0 runs for the duration."},
+        {"timeout", "120", "Request timeout in seconds"},
+        {"stub", "true", "Start the stub Ollama server in this process"},
+        {"stubOnly", "false", "Only run the stub Ollama server until the process is killed"},
+        {"port", "11434", "Port of the stub Ollama server"},
+        {"latency", "100", "Stub time to first token in milliseconds"},
+        {"tokensPerSecond", "50", "Stub token generation rate"},
+        {"responseTokens", "64", "Stub tokens per reply"},
+        {"toolCalls", "1", "Stub tool calls per user message"},
+        {"dimensions", "768", "Stub embedding dimensions"},
+        {"script", String.join(",", StubOllama.TODO_SCRIPT), "Stub tool calls, separated by commas"}
+    };
+    
+    private final Map<String,Recorder> recorders = new LinkedHashMap<>();
+    private final HttpClient client;
+    private final String url;
+    private final String[] services;
+    private final int concurrency;
+    private final Duration timeout;
+    
+    private final AtomicLong remaining = new AtomicLong();
+    private volatile long measureStart;
+    private volatile long measureEnd;
+    
+    public LoadTest(String url, String[] services, int concurrency, Duration timeout)
+    {
+        this.client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.url = url.endsWith("/") ? url : url + "/";
+        this.services = services;
+        this.concurrency = concurrency;
+        this.timeout = timeout;
+        
+        for(var service : services) recorders.put(service, new Recorder(service));
+        
+        if(recorders.containsKey("character")) recorders.put("character/init", new Recorder("character/init"));
+    }
+    
+    public static void main(String[] args) throws Exception
+    {
+        var options = parse(args);
+        StubOllama stub = null;
+        LoadTest test;
+        
+        if(options == null) return;
+        
+        if(Boolean.parseBoolean(options.get("stub")) || Boolean.parseBoolean(options.get("stubOnly")))
+        {
+            stub = new StubOllama();
+            
+            stub.setPort(Integer.parseInt(options.get("port")));
+            stub.setLatency(Long.parseLong(options.get("latency")));
+            stub.setTokensPerSecond(Double.parseDouble(options.get("tokensPerSecond")));
+            stub.setResponseTokens(Integer.parseInt(options.get("responseTokens")));
+            stub.setToolCallsPerTurn(Integer.parseInt(options.get("toolCalls")));
+            stub.setDimensions(Integer.parseInt(options.get("dimensions")));
+            stub.setScript(options.get("script").split(","));
+            stub.start();
+            
+            System.out.println("Stub Ollama listening on port " + stub.getPort());
+        }
+        
+        if(Boolean.parseBoolean(options.get("stubOnly")))
+        {
+            Thread.currentThread().join();
+            return;
+        }
+        
+        test = new LoadTest(options.get("url"), options.get("services").split(","), Integer.parseInt(options.get("concurrency")), Duration.ofSeconds(Long.parseLong(options.get("timeout"))));
+        
+        try
+        {
+            test.run(Duration.ofSeconds(Long.parseLong(options.get("warmup"))), Duration.ofSeconds(Long.parseLong(options.get("duration"))), Long.parseLong(options.get("requests")));
+            test.report();
+            
+            if(stub != null) System.out.printf("%nStub: %d chats, %d tool calls, %d embeddings%n", stub.getChats(), stub.getToolCalls(), stub.getEmbeddings());
+        }
+        finally
+        {
+            if(stub != null) stub.close();
+        }
+    }
+    
+    private static Map<String,String> parse(String[] args)
+    {
+        var options = new LinkedHashMap<String,String>();
+        int index;
+        
+        for(var option : OPTIONS) options.put(option[0], option[1]);
+        
+        for(var arg : args)
+        {
+            index = arg.indexOf('=');
+            
+            if(arg.equals("--help") || !arg.startsWith("--"))
+            {
+                System.out.println("Usage: java -jar loadtest.jar [--name=value ...]\n");
+                
+                for(var option : OPTIONS) System.out.printf("  --%-16s %s (default: %s)%n", option[0], option[2], option[1]);
+                
+                return null;
+            }
+            
+            if(index < 0) options.put(arg.substring(2), "true");
+            else options.put(arg.substring(2, index), arg.substring(index + 1));
+        }
+        
+        return options;
+    }
+    
+    /**
+     * Runs the users for the warmup period and then for the measured
+     * duration or until the requested number of measured requests completes
+     *
+     * @param warmup time to run before recording
+     * @param duration time to record
+     * @param requests number of requests to record, or 0 to run for the duration
+     * @throws InterruptedException if interrupted while waiting for the users
+     */
+    public void run(Duration warmup, Duration duration, long requests) throws InterruptedException
+    {
+        var users = new ArrayList<Thread>();
+        
+        measureStart = System.nanoTime() + warmup.toNanos();
+        measureEnd = (requests > 0) ? Long.MAX_VALUE : measureStart + duration.toNanos();
+        
+        remaining.set((requests > 0) ? requests : Long.MAX_VALUE);
+        
+        for(int i=0; i<concurrency; i++)
+        {
+            var user = new User(i);
+            
+            users.add(Thread.ofVirtual().name("loadtest-" + i).start(user::run));
+        }
+        
+        for(var thread : users) thread.join();
+        
+        measureEnd = Math.min(measureEnd, System.nanoTime());
+    }
+    
+    public void report()
+    {
+        double seconds = Math.max(1, measureEnd - measureStart) / 1e9;
+        long total = 0;
+        long errors = 0;
+        long[] samples;
+        
+        System.out.printf("%nMeasured %.1f seconds with %d users%n%n", seconds, concurrency);
+        System.out.printf("%-16s %9s %7s %9s %9s %9s %9s %9s %9s%n", "Service", "Requests", "Errors", "Req/s", "Mean ms", "p50 ms", "p95 ms", "p99 ms", "Max ms");
+        
+        for(var recorder : recorders.values())
+        {
+            samples = recorder.getSamples();
+            total += samples.length;
+            errors += recorder.getErrors();
+            
+            System.out.printf("%-16s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    recorder.getName(),
+                    samples.length,
+                    recorder.getErrors(),
+                    samples.length / seconds,
+                    mean(samples) / 1e6,
+                    Recorder.percentile(samples, 50) / 1e6,
+                    Recorder.percentile(samples, 95) / 1e6,
+                    Recorder.percentile(samples, 99) / 1e6,
+                    Recorder.percentile(samples, 100) / 1e6);
+        }
+        
+        System.out.printf("%-16s %9d %7d %9.1f%n", "Total", total, errors, total / seconds);
+    }
+    
+    private static double mean(long[] samples)
+    {
+        double sum = 0;
+        
+        for(long sample : samples) sum += sample;
+        
+        return (samples.length < 1) ? 0 : sum / samples.length;
+    }
+    
+    private static String encode(String value)
+    {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * A simulated user with its own session, todo list and character
+     */
+    private class User
+    {
+        private final int index;
+        private String cookie;
+        private boolean started;
+        private long iteration;
+        
+        public User(int index)
+        {
+            this.index = index;
+        }
+        
+        private String question()
+        {
+            return QUESTIONS[(int)((index + iteration) % QUESTIONS.length)];
+        }
+        
+        private String path(String service)
+        {
+            return switch(service)
+            {
+                case "silly", "docs" -> "services/" + service + "?chat=" + encode(question());
+                case "character" -> "services/character?chat=" + encode(question());
+                case "character/init" -> "services/character/init/" + encode(index % 2 == 0 ? "Pirate" : "Wizard");
+                case "todo" -> "services/todo/chat?list=loadtest-" + index + "&chat=" + encode(question());
+                case "list" -> "services/todo?list=loadtest-" + index;
+                default -> throw new IllegalArgumentException("Unknown service: " + service);
+            };
+        }
+        
+        private boolean send(String service)
+        {
+            var builder = HttpRequest.newBuilder(URI.create(url + path(service))).timeout(timeout).GET();
+            long start = System.nanoTime();
+            HttpResponse<String> response;
+            boolean success;
+            
+            if(cookie != null) builder.header("Cookie", cookie);
+            
+            try
+            {
+                response = client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+                success = response.statusCode() / 100 == 2;
+                
+                response.headers().firstValue("Set-Cookie").ifPresent(value -> cookie = value.split(";", 2)[0]);
+            }
+            catch(IOException e)
+            {
+                success = false;
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            
+            // Requests that started during the warmup are not recorded
+            if(start < measureStart) return success;
+            
+            if(success) recorders.get(service).record(System.nanoTime() - start);
+            else recorders.get(service).error();
+            
+            return success;
+        }
+        
+        public void run()
+        {
+            String service;
+            
+            while(System.nanoTime() < measureEnd && !Thread.currentThread().isInterrupted())
+            {
+                service = services[(int)((index + iteration++) % services.length)];
+                
+                // The character conversation has to be started in the session first
+                if(service.equals("character") && !started && !(started = send("character/init"))) continue;
+                if(System.nanoTime() >= measureStart && remaining.getAndDecrement() <= 0) break;
+                
+                send(service);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency of every request made against a scenario so exact
+ * percentiles can be reported at the end of the run. A load test makes at
+ * most a few hundred thousand requests, so keeping every sample is cheap
+ * compared to the requests themselves.
+ *
+ * @author jbanes
+ */
+public class Recorder
+{
+    private final String name;
+    private final LongAdder errors = new LongAdder();
+    
+    private long[] samples = new long[1024];
+    private int count;
+    
+    public Recorder(String name)
+    {
+        this.name = name;
+    }
+    
+    public String getName()
+    {
+        return name;
+    }
+    
+    /**
+     * Records a completed request
+     *
+     * @param nanos the latency of the request in nanoseconds
+     */
+    public synchronized void record(long nanos)
+    {
+        if(count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+        
+        samples[count++] = nanos;
+    }
+    
+    public void error()
+    {
+        errors.increment();
+    }
+    
+    public synchronized int getCount()
+    {
+        return count;
+    }
+    
+    public long getErrors()
+    {
+        return errors.sum();
+    }
+    
+    /**
+     * Sorted copy of the recorded latencies
+     *
+     * @return the latencies in nanoseconds
+     */
+    public synchronized long[] getSamples()
+    {
+        var sorted = Arrays.copyOf(samples, count);
+        
+        Arrays.sort(sorted);
+        
+        return sorted;
+    }
+    
+    /**
+     * Nearest-rank percentile of a sorted set of samples
+     *
+     * @param sorted the sorted latencies
+     * @param percentile the percentile between 0 and 100
+     * @return the latency, or zero if there are no samples
+     */
+    public static long percentile(long[] sorted, double percentile)
+    {
+        int index;
+        
+        if(sorted.length < 1) return 0;
+        
+        index = (int)Math.ceil(percentile / 100 * sorted.length) - 1;
+        
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,535 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.loadtest;
+
+import com.invirgance.convirgance.json.JSONArray;
+import com.invirgance.convirgance.json.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Minimal stand-in for the Ollama REST API so the services can be driven
+ * without a GPU. Chat responses are generated from filler words after a
+ * configurable time to first token and at a configurable token rate, so
+ * the timing resembles a real model while staying reproducible. Embeddings
+ * are hashed bags of words, so similar text produces similar vectors and
+ * retrieval thresholds behave sensibly.
+ * <br><br>
+ * When a chat request offers tools, the stub answers with the next call in
+ * its script before producing the final reply. Each step of the script is a
+ * tool name followed by its arguments, separated by "|". Arguments are
+ * assigned to the parameters in the order the tool declares them, and steps
+ * naming a tool the request does not offer are skipped. The default script
+ * exercises the todo tools.
+ * <br><br>
+ * Each request is handled on its own virtual thread, so the simulated
+ * generation time never limits concurrency.
+ *
+ * @author jbanes
+ */
+public class StubOllama implements AutoCloseable
+{
+    public static final String[] TODO_SCRIPT = {
+        "createTask|Load test task",
+        "searchTasks|load test",
+        "listTasksByState|TODO",
+        "updateMostRecentTask|DONE",
+        "countAllTasks",
+        "newestList|5",
+        "mostRecentlyUpdatedList|5"
+    };
+    
+    private static final String[] WORDS = {
+        "the", "list", "task", "is", "a", "platform", "service", "and", "to", "of",
+        "convirgance", "data", "your", "with", "done", "for", "can", "you", "todo", "in"
+    };
+    
+    private final AtomicLong step = new AtomicLong();
+    private final LongAdder chats = new LongAdder();
+    private final LongAdder toolCalls = new LongAdder();
+    private final LongAdder embeddings = new LongAdder();
+    
+    private int port = 11434;
+    private long latency = 100;
+    private double tokensPerSecond = 50;
+    private int responseTokens = 64;
+    private int toolCallsPerTurn = 1;
+    private int dimensions = 768;
+    private String[] script = TODO_SCRIPT;
+    
+    private HttpServer server;
+    private ExecutorService executor;
+    
+    public int getPort()
+    {
+        return port;
+    }
+    
+    /**
+     * The port to listen on. Defaults to the Ollama port, so the services
+     * connect to the stub without any configuration changes.
+     *
+     * @param port the port, or 0 to pick a free port
+     */
+    public void setPort(int port)
+    {
+        this.port = port;
+    }
+    
+    /**
+     * Time in milliseconds before the first token of a chat response. Covers
+     * model loading and prompt evaluation.
+     *
+     * @return the latency in milliseconds
+     */
+    public long getLatency()
+    {
+        return latency;
+    }
+    
+    public void setLatency(long latency)
+    {
+        this.latency = latency;
+    }
+    
+    public double getTokensPerSecond()
+    {
+        return tokensPerSecond;
+    }
+    
+    /**
+     * Rate at which the response tokens are generated. Zero or less returns
+     * the whole response immediately after the latency.
+     *
+     * @param tokensPerSecond the generation rate
+     */
+    public void setTokensPerSecond(double tokensPerSecond)
+    {
+        this.tokensPerSecond = tokensPerSecond;
+    }
+    
+    public int getResponseTokens()
+    {
+        return responseTokens;
+    }
+    
+    public void setResponseTokens(int responseTokens)
+    {
+        this.responseTokens = responseTokens;
+    }
+    
+    /**
+     * Number of tool calls made in response to each user message before the
+     * final reply is produced
+     *
+     * @return the number of tool calls per turn
+     */
+    public int getToolCallsPerTurn()
+    {
+        return toolCallsPerTurn;
+    }
+    
+    public void setToolCallsPerTurn(int toolCallsPerTurn)
+    {
+        this.toolCallsPerTurn = toolCallsPerTurn;
+    }
+    
+    public int getDimensions()
+    {
+        return dimensions;
+    }
+    
+    public void setDimensions(int dimensions)
+    {
+        this.dimensions = dimensions;
+    }
+    
+    public String[] getScript()
+    {
+        return script;
+    }
+    
+    public void setScript(String[] script)
+    {
+        this.script = script;
+    }
+    
+    public long getChats()
+    {
+        return chats.sum();
+    }
+    
+    public long getToolCalls()
+    {
+        return toolCalls.sum();
+    }
+    
+    public long getEmbeddings()
+    {
+        return embeddings.sum();
+    }
+    
+    public void start() throws IOException
+    {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        
+        server.setExecutor(executor);
+        server.createContext("/api/chat", this::chat);
+        server.createContext("/api/embed", this::embed);
+        server.createContext("/api/embeddings", this::embed);
+        server.createContext("/api/pull", exchange -> send(exchange, json("status", "success")));
+        server.createContext("/api/show", this::show);
+        server.createContext("/api/tags", exchange -> send(exchange, json("models", new JSONArray<>())));
+        server.createContext("/api/version", exchange -> send(exchange, json("version", "0.0.0-stub")));
+        server.createContext("/", exchange -> send(exchange, 404, json("error", "not found")));
+        server.start();
+        
+        port = server.getAddress().getPort();
+    }
+    
+    @Override
+    public void close()
+    {
+        if(server != null) server.stop(0);
+        if(executor != null) executor.close();
+        
+        server = null;
+        executor = null;
+    }
+    
+    private static JSONObject json(String key, Object value)
+    {
+        var object = new JSONObject();
+        
+        object.put(key, value);
+        
+        return object;
+    }
+    
+    private static JSONObject read(HttpExchange exchange) throws IOException
+    {
+        try(var in = exchange.getRequestBody())
+        {
+            var body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            
+            return body.isBlank() ? new JSONObject() : new JSONObject(body);
+        }
+    }
+    
+    private static void send(HttpExchange exchange, JSONObject response) throws IOException
+    {
+        send(exchange, 200, response);
+    }
+    
+    private static void send(HttpExchange exchange, int status, JSONObject response) throws IOException
+    {
+        var bytes = response.toString().getBytes(StandardCharsets.UTF_8);
+        
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        
+        try(var out = exchange.getResponseBody())
+        {
+            out.write(bytes);
+        }
+    }
+    
+    private static void sleep(long nanos)
+    {
+        if(nanos <= 0) return;
+        
+        try
+        {
+            Thread.sleep(nanos / 1_000_000, (int)(nanos % 1_000_000));
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void show(HttpExchange exchange) throws IOException
+    {
+        var response = new JSONObject();
+        var details = new JSONObject();
+        
+        details.put("format", "stub");
+        details.put("family", "stub");
+        details.put("parameter_size", "0B");
+        
+        response.put("modelfile", "");
+        response.put("parameters", "");
+        response.put("template", "{{ .Prompt }}");
+        response.put("details", details);
+        response.put("capabilities", new JSONArray<>("completion", "tools", "embedding"));
+        
+        read(exchange);
+        send(exchange, response);
+    }
+    
+    private void chat(HttpExchange exchange) throws IOException
+    {
+        var request = read(exchange);
+        var messages = (request.get("messages") instanceof List<?> list) ? list : List.of();
+        var tools = (request.get("tools") instanceof List<?> list) ? list : List.of();
+        var model = request.getString("model");
+        var call = (tools.isEmpty() || pendingCalls(messages) < 1) ? null : nextCall(tools);
+        long start = System.nanoTime();
+        long promptTokens = 0;
+        int tokens = (call == null) ? responseTokens : 1;
+        long interval = (tokensPerSecond > 0) ? (long)(1_000_000_000 / tokensPerSecond) : 0;
+        
+        chats.increment();
+        
+        for(var message : messages)
+        {
+            if(message instanceof Map<?,?> map) promptTokens += String.valueOf(map.get("content")).length() / 4;
+        }
+        
+        sleep(latency * 1_000_000);
+        
+        if(call != null)
+        {
+            toolCalls.increment();
+            sleep(interval);
+            send(exchange, done(model, message("", call), start, promptTokens, tokens));
+        }
+        else if(request.get("stream") instanceof Boolean stream && !stream)
+        {
+            var content = new StringBuilder();
+            
+            for(int i=0; i<tokens; i++) content.append(WORDS[i % WORDS.length]).append(' ');
+            
+            sleep(interval * tokens);
+            send(exchange, done(model, message(content.toString().trim(), null), start, promptTokens, tokens));
+        }
+        else
+        {
+            stream(exchange, model, start, promptTokens, tokens, interval);
+        }
+    }
+    
+    private void stream(HttpExchange exchange, String model, long start, long promptTokens, int tokens, long interval) throws IOException
+    {
+        JSONObject chunk;
+        
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        
+        try(var out = exchange.getResponseBody())
+        {
+            for(int i=0; i<tokens; i++)
+            {
+                sleep(interval);
+                
+                chunk = new JSONObject();
+                
+                chunk.put("model", model);
+                chunk.put("created_at", Instant.now().toString());
+                chunk.put("message", message(WORDS[i % WORDS.length] + " ", null));
+                chunk.put("done", false);
+                
+                line(out, chunk);
+            }
+            
+            line(out, done(model, message("", null), start, promptTokens, tokens));
+        }
+    }
+    
+    private static void line(OutputStream out, JSONObject object) throws IOException
+    {
+        out.write((object.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    private static JSONObject message(String content, JSONObject call)
+    {
+        var message = new JSONObject();
+        
+        message.put("role", "assistant");
+        message.put("content", content);
+        
+        if(call != null) message.put("tool_calls", new JSONArray<>(call));
+        
+        return message;
+    }
+    
+    private static JSONObject done(String model, JSONObject message, long start, long promptTokens, int tokens)
+    {
+        var response = new JSONObject();
+        long duration = System.nanoTime() - start;
+        
+        response.put("model", model);
+        response.put("created_at", Instant.now().toString());
+        response.put("message", message);
+        response.put("done", true);
+        response.put("done_reason", "stop");
+        response.put("total_duration", duration);
+        response.put("load_duration", 0);
+        response.put("prompt_eval_count", promptTokens);
+        response.put("prompt_eval_duration", 0);
+        response.put("eval_count", tokens);
+        response.put("eval_duration", duration);
+        
+        return response;
+    }
+    
+    /**
+     * Number of tool calls still to be made for the latest user message
+     */
+    private int pendingCalls(List<?> messages)
+    {
+        int calls = 0;
+        Object role;
+        
+        for(int i=messages.size()-1; i>=0; i--)
+        {
+            role = (messages.get(i) instanceof Map<?,?> map) ? map.get("role") : null;
+            
+            if("user".equals(role)) break;
+            if("tool".equals(role)) calls++;
+        }
+        
+        return toolCallsPerTurn - calls;
+    }
+    
+    private JSONObject nextCall(List<?> tools)
+    {
+        String[] parts;
+        Map<?,?> function;
+        
+        // Skip steps naming tools this service doesn't offer
+        for(int i=0; i<script.length; i++)
+        {
+            parts = script[(int)(step.getAndIncrement() % script.length)].split("\\|");
+            function = find(tools, parts[0]);
+            
+            if(function != null) return call(function, parts);
+        }
+        
+        return null;
+    }
+    
+    private static Map<?,?> find(List<?> tools, String name)
+    {
+        for(var tool : tools)
+        {
+            if(tool instanceof Map<?,?> map && map.get("function") instanceof Map<?,?> function && name.equals(function.get("name"))) return function;
+        }
+        
+        return null;
+    }
+    
+    private static JSONObject call(Map<?,?> function, String[] parts)
+    {
+        var call = new JSONObject();
+        var target = new JSONObject();
+        var arguments = new JSONObject();
+        var parameters = (function.get("parameters") instanceof Map<?,?> map) ? map : Map.of();
+        var properties = (parameters.get("properties") instanceof Map<?,?> map) ? map : Map.of();
+        int index = 1;
+        Object type;
+        
+        for(var name : properties.keySet())
+        {
+            if(index >= parts.length) break;
+            
+            type = (properties.get(name) instanceof Map<?,?> property) ? property.get("type") : null;
+            
+            if("integer".equals(type)) arguments.put(name.toString(), Long.parseLong(parts[index++]));
+            else if("number".equals(type)) arguments.put(name.toString(), Double.parseDouble(parts[index++]));
+            else arguments.put(name.toString(), parts[index++]);
+        }
+        
+        target.put("name", function.get("name"));
+        target.put("arguments", arguments);
+        call.put("function", target);
+        
+        return call;
+    }
+    
+    private void embed(HttpExchange exchange) throws IOException
+    {
+        var request = read(exchange);
+        var input = request.containsKey("prompt") ? request.get("prompt") : request.get("input");
+        var vectors = new JSONArray<JSONArray<Double>>();
+        
+        if(input instanceof List<?> list)
+        {
+            for(var text : list) vectors.add(embedding(String.valueOf(text)));
+        }
+        else
+        {
+            vectors.add(embedding(String.valueOf(input)));
+        }
+        
+        embeddings.add(vectors.size());
+        
+        // The legacy endpoint takes a single prompt and returns a single vector
+        if(request.containsKey("prompt")) send(exchange, json("embedding", vectors.get(0)));
+        else send(exchange, json("embeddings", vectors));
+    }
+    
+    /**
+     * Hashes each word into a signed bucket and normalizes the result, so
+     * texts sharing words have a positive cosine similarity
+     */
+    private JSONArray<Double> embedding(String text)
+    {
+        var vector = new double[dimensions];
+        var result = new JSONArray<Double>();
+        double norm = 0;
+        int hash;
+        
+        for(var word : text.toLowerCase().split("[^\\p{L}\\p{N}]+"))
+        {
+            if(word.isEmpty()) continue;
+            
+            hash = word.hashCode() * 0x9E3779B9;
+            vector[Math.floorMod(hash, dimensions)] += (hash & 0x80000000) == 0 ? 1 : -1;
+        }
+        
+        for(var value : vector) norm += value * value;
+        
+        if(norm == 0) vector[0] = norm = 1;
+        
+        norm = Math.sqrt(norm);
+        
+        for(var value : vector) result.add(value / norm);
+        
+        return result;
+    }
+}
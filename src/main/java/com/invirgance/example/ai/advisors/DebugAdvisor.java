@@ -26,8 +26,24 @@ package com.invirgance.example.ai.advisors;
 import com.invirgance.convirgance.ai.Advisor;
 import com.invirgance.convirgance.json.JSONObject;
 import com.invirgance.convirgance.wiring.annotation.Wiring;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
+ * Prints the messages sent to and received from the model. By default the
+ * messages are pretty printed to standard out on the request thread.
+ * <br><br>
+ * In async mode, each message is written as a single JSON line by a
+ * background DebugLog, either to standard out or to a size-rotated file.
+ * Messages are serialized on the writer thread rather than the request
+ * thread. Only the sampled fraction of requests is logged, and lines that
+ * arrive while the log's queue is full are dropped, so the mode is cheap
+ * enough to leave enabled in production.
+ * <br><br>
+ * Sampling uses a single random draw per request, shared by every
+ * DebugAdvisor, so that a logged request has both halves of each exchange.
+ * AdvisorsListener clears the draw when the request completes. Code calling
+ * the model outside of a request must call clear() itself.
  *
  * @author jbanes
  */
@@ -37,6 +53,16 @@ public class DebugAdvisor implements Advisor
     private boolean debugChat;
     private boolean debugResponse;
     private boolean focused;
+    private boolean async;
+    private String file;
+    private double sampleRate = 1.0;
+    private int queueSize = 4096;
+    private long maxFileSize = 10 * 1024 * 1024;
+    private int maxFiles = 5;
+    
+    private static final ThreadLocal<Double> sample = new ThreadLocal<>();
+    
+    private volatile DebugLog log;
 
     public boolean isDebugChat()
     {
@@ -68,9 +94,136 @@ public class DebugAdvisor implements Advisor
         this.focused = focused;
     }
     
+    public boolean isAsync()
+    {
+        return async;
+    }
+    
+    public void setAsync(boolean async)
+    {
+        this.async = async;
+    }
+    
+    /**
+     * File the async mode writes to. When not set, async output goes to
+     * standard out.
+     *
+     * @return the path of the log file
+     */
+    public String getFile()
+    {
+        return file;
+    }
+    
+    public void setFile(String file)
+    {
+        this.file = file;
+    }
+    
+    /**
+     * Fraction of requests logged in async mode, from 0 to 1
+     *
+     * @return the sampling rate
+     */
+    public double getSampleRate()
+    {
+        return sampleRate;
+    }
+    
+    public void setSampleRate(double sampleRate)
+    {
+        this.sampleRate = sampleRate;
+    }
+    
+    /**
+     * Maximum number of lines waiting to be written before new lines are
+     * dropped
+     *
+     * @return the size of the queue
+     */
+    public int getQueueSize()
+    {
+        return queueSize;
+    }
+    
+    public void setQueueSize(int queueSize)
+    {
+        this.queueSize = queueSize;
+    }
+    
+    public long getMaxFileSize()
+    {
+        return maxFileSize;
+    }
+    
+    public void setMaxFileSize(long maxFileSize)
+    {
+        this.maxFileSize = maxFileSize;
+    }
+    
+    public int getMaxFiles()
+    {
+        return maxFiles;
+    }
+    
+    public void setMaxFiles(int maxFiles)
+    {
+        this.maxFiles = maxFiles;
+    }
+    
+    private DebugLog log()
+    {
+        if(log == null) log = DebugLog.get((file == null) ? null : Path.of(file), queueSize, maxFileSize, maxFiles);
+        
+        return log;
+    }
+    
+    private void write(String phase, Object value)
+    {
+        var line = new JSONObject();
+        
+        line.put("time", System.currentTimeMillis());
+        line.put("thread", Thread.currentThread().getName());
+        line.put("phase", phase);
+        line.put(phase.equals("before") ? "request" : "response", value);
+        
+        log().offer(line);
+    }
+    
+    private boolean isSampled()
+    {
+        var draw = sample.get();
+        
+        if(sampleRate >= 1.0) return true;
+        
+        if(draw == null)
+        {
+            draw = ThreadLocalRandom.current().nextDouble();
+            
+            sample.set(draw);
+        }
+        
+        return (draw < sampleRate);
+    }
+    
+    /**
+     * Clears the sampling draw of the current request
+     */
+    public static void clear()
+    {
+        sample.remove();
+    }
+    
     @Override
     public void before(JSONObject parameters, JSONObject message)
     {
+        if(async)
+        {
+            if(debugChat && isSampled()) write("before", focused ? message.get("messages") : message);
+            
+            return;
+        }
+        
         if(debugChat)
         {
             if(focused) System.out.println(message.get("messages"));
@@ -81,6 +234,13 @@ public class DebugAdvisor implements Advisor
     @Override
     public void after(JSONObject parameters, JSONObject message)
     {
+        if(async)
+        {
+            if(debugResponse && isSampled()) write("after", focused ? message.get("message") : message);
+            
+            return;
+        }
+        
         if(debugResponse)
         {
             if(focused) System.out.println(message.get("message"));
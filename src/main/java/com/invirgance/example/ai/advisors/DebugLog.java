@@ -0,0 +1,305 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.ai.advisors;
+
+import com.invirgance.example.metrics.Counter;
+import com.invirgance.example.metrics.MetricsRegistry;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background writer for debug output. Callers hand over objects which are
+ * queued without locking, then serialized with toString() and written as
+ * lines by a single daemon thread, so logging never blocks a request on
+ * serialization, I/O or a shared stream. The queue is bounded. Lines offered
+ * while it is full are dropped and counted in the ai_debug_log_dropped_total
+ * metric. The number of dropped lines, and of lines lost to failed writes,
+ * is written to the log once it can be written again.
+ * <br><br>
+ * When writing to a file, the file is rotated once it exceeds the maximum
+ * size, keeping the given number of older files as name.1, name.2, etc.
+ * Logs are shared by file so advisors configured with the same file use a
+ * single writer.
+ * <br><br>
+ * A failure to write is counted in the ai_debug_log_errors_total metric.
+ * The writer retries once a second. Writers are stopped by shutdown(), which AdvisorsListener
+ * calls when the web application is undeployed.
+ *
+ * @author jbanes
+ */
+public class DebugLog
+{
+    private static final ConcurrentHashMap<String,DebugLog> logs = new ConcurrentHashMap<>();
+    
+    private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Path file;
+    private final int capacity;
+    private final long maxSize;
+    private final int maxFiles;
+    private final Thread thread;
+    private final Counter errors;
+    private final Counter droppedTotal;
+    
+    private volatile boolean running = true;
+    private volatile boolean waiting;
+    private Writer writer;
+    private long size;
+    
+    private DebugLog(Path file, int capacity, long maxSize, int maxFiles)
+    {
+        this.file = file;
+        this.capacity = capacity;
+        this.maxSize = maxSize;
+        this.maxFiles = maxFiles;
+        var name = (file == null) ? "stdout" : file.toString();
+        
+        this.errors = MetricsRegistry.getRegistry().counter("ai_debug_log_errors_total", "Failed attempts to write the debug log", "file", name);
+        this.droppedTotal = MetricsRegistry.getRegistry().counter("ai_debug_log_dropped_total", "Debug log lines dropped because the queue was full", "file", name);
+        this.thread = new Thread(this::run, "debug-log");
+        
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Obtains the log for a file, starting its writer if needed. The settings
+     * of the first caller for a file apply.
+     *
+     * @param file the file to write to or null to write to standard out
+     * @param capacity the maximum number of lines waiting to be written
+     * @param maxSize the approximate size in bytes at which the file is rotated
+     * @param maxFiles the number of rotated files to keep
+     * @return the shared log for the file
+     */
+    public static DebugLog get(Path file, int capacity, long maxSize, int maxFiles)
+    {
+        var key = (file == null) ? "" : file.toAbsolutePath().toString();
+        
+        return logs.computeIfAbsent(key, unused -> new DebugLog(file, capacity, maxSize, maxFiles));
+    }
+    
+    /**
+     * Queues a line to be written. Never blocks. The line is serialized on
+     * the writer thread, so it must not be modified once offered.
+     *
+     * @param line the line to write. Its toString() must not contain a line
+     * terminator.
+     * @return false if the queue was full and the line was dropped
+     */
+    public boolean offer(Object line)
+    {
+        if(queued.incrementAndGet() > capacity)
+        {
+            queued.decrementAndGet();
+            dropped.increment();
+            droppedTotal.increment();
+            
+            return false;
+        }
+        
+        queue.offer(line);
+        
+        if(waiting) LockSupport.unpark(thread);
+        
+        return true;
+    }
+    
+    /**
+     * Stops the writers of all logs after writing the lines already queued.
+     * Logs obtained afterwards start new writers.
+     */
+    public static void shutdown()
+    {
+        for(var key : logs.keySet())
+        {
+            var log = logs.remove(key);
+            
+            if(log != null) log.stop();
+        }
+    }
+    
+    private void stop()
+    {
+        running = false;
+        
+        LockSupport.unpark(thread);
+        
+        try
+        {
+            thread.join(10 * 1000);
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void run()
+    {
+        while(running)
+        {
+            if(!drain())
+            {
+                // Back off rather than spinning on a broken file
+                LockSupport.parkNanos(1_000_000_000L);
+                continue;
+            }
+            
+            waiting = true;
+            
+            if(running && queue.isEmpty()) LockSupport.parkNanos(1_000_000_000L);
+            
+            waiting = false;
+        }
+        
+        drain();
+        close();
+    }
+    
+    private boolean drain()
+    {
+        Object line = null;
+        long lostDropped;
+        long lostFailed;
+        
+        try
+        {
+            while((line = queue.poll()) != null)
+            {
+                queued.decrementAndGet();
+                
+                write(serialize(line));
+            }
+            
+            lostDropped = dropped.sum();
+            lostFailed = failed.sum();
+            
+            if(lostDropped > 0 || lostFailed > 0)
+            {
+                write("{\"dropped\":" + lostDropped + ",\"failed\":" + lostFailed + "}");
+                dropped.add(-lostDropped);
+                failed.add(-lostFailed);
+            }
+            
+            if(writer != null) writer.flush();
+            
+            return true;
+        }
+        catch(IOException e)
+        {
+            // The line being written when the write failed is lost
+            if(line != null) failed.increment();
+            
+            errors.increment();
+            
+            close();
+            
+            return false;
+        }
+    }
+    
+    private String serialize(Object line)
+    {
+        try
+        {
+            return line.toString();
+        }
+        catch(RuntimeException e)
+        {
+            return "{\"error\":\"Unable to serialize the line: " + e.getClass().getName() + "\"}";
+        }
+    }
+    
+    private void write(String line) throws IOException
+    {
+        if(writer == null) open();
+        
+        writer.write(line);
+        writer.write('\n');
+        
+        size += line.length() + 1;
+        
+        if(file != null && size >= maxSize) rotate();
+    }
+    
+    private void open() throws IOException
+    {
+        if(file == null)
+        {
+            writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            return;
+        }
+        
+        if(file.getParent() != null) Files.createDirectories(file.getParent());
+        
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        size = Files.size(file);
+    }
+    
+    private void rotate() throws IOException
+    {
+        writer.close();
+        writer = null;
+        
+        for(int i=maxFiles-1; i>0; i--)
+        {
+            var source = file.resolveSibling(file.getFileName() + "." + i);
+            
+            if(Files.exists(source)) Files.move(source, file.resolveSibling(file.getFileName() + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+        }
+        
+        if(maxFiles > 0) Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        else Files.delete(file);
+    }
+    
+    private void close()
+    {
+        try
+        {
+            if(writer != null && file != null) writer.close();
+            else if(writer != null) writer.flush();
+        }
+        catch(IOException e)
+        {
+            // Already failing, nothing more to do
+        }
+        
+        writer = null;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.ai.advisors;
+
+import com.invirgance.convirgance.ai.Advisor;
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.wiring.annotation.Wiring;
+import com.invirgance.example.metrics.Counter;
+import com.invirgance.example.metrics.Histogram;
+import com.invirgance.example.metrics.MetricsRegistry;
+import com.invirgance.example.metrics.ToolMetrics;
+import java.util.List;
+
+/**
+ * Records the latency, token counts and errors of every call to the model.
+ * Prefill and generation times are taken from the durations Ollama reports
+ * in its response. Metrics are labeled with the configured service name and
+ * are published at /services/metrics.
+ * <br><br>
+ * A call that starts before the previous call on the same thread reported a
+ * response is counted as an error, since the previous call must have failed.
+ * <br><br>
+ * The advisor also reports the tool calls requested by each response and
+ * the results sent back to the model to ToolMetrics, so every tool is
+ * measured in one place.
+ *
+ * @author jbanes
+ */
+@Wiring
+public class MetricsAdvisor implements Advisor
+{
+    private static final double[] SECONDS = Histogram.exponential(0.005, 2, 16);
+    private static final double[] TOKENS = Histogram.exponential(16, 2, 13);
+    private static final double NANOS = 1_000_000_000.0;
+    
+    private final ThreadLocal<Long> started = new ThreadLocal<>();
+    
+    private String service = "default";
+    
+    private volatile Counter requests;
+    private Counter errors;
+    private Histogram latency;
+    private Histogram promptTokens;
+    private Histogram completionTokens;
+    private Histogram prefill;
+    private Histogram generation;
+    private Histogram load;
+    
+    /**
+     * Name used to label the metrics of this advisor, typically the name of
+     * the service it is configured on
+     *
+     * @return the service label
+     */
+    public String getService()
+    {
+        return service;
+    }
+    
+    public void setService(String service)
+    {
+        this.service = service;
+        this.requests = null;
+    }
+    
+    private void register()
+    {
+        var registry = MetricsRegistry.getRegistry();
+        
+        errors = registry.counter("ai_model_errors_total", "Calls to the model that failed", "service", service);
+        latency = registry.histogram("ai_model_latency_seconds", "Time from sending a request to the model until the response", SECONDS, "service", service);
+        promptTokens = registry.histogram("ai_model_prompt_tokens", "Tokens in the prompt as counted by the model", TOKENS, "service", service);
+        completionTokens = registry.histogram("ai_model_completion_tokens", "Tokens generated by the model", TOKENS, "service", service);
+        prefill = registry.histogram("ai_model_prefill_seconds", "Time the model spent evaluating the prompt", SECONDS, "service", service);
+        generation = registry.histogram("ai_model_eval_seconds", "Time the model spent generating the response", SECONDS, "service", service);
+        load = registry.histogram("ai_model_load_seconds", "Time spent loading the model", SECONDS, "service", service);
+        
+        // Assigned last since it signals that registration is complete
+        requests = registry.counter("ai_model_requests_total", "Calls made to the model", "service", service);
+    }
+    
+    @Override
+    public void before(JSONObject parameters, JSONObject message)
+    {
+        if(requests == null) register();
+        
+        if(started.get() != null) errors.increment();
+        
+        started.set(System.nanoTime());
+        requests.increment();
+        
+        if(message.get("messages") instanceof List<?> messages) ToolMetrics.returned(messages);
+    }
+    
+    @Override
+    public void after(JSONObject parameters, JSONObject message)
+    {
+        var start = started.get();
+        
+        started.remove();
+        
+        if(requests == null) register();
+        
+        if(start != null) latency.observe((System.nanoTime() - start) / NANOS);
+        
+        if(message == null || message.containsKey("error") || !message.containsKey("message"))
+        {
+            errors.increment();
+            return;
+        }
+        
+        if(message.containsKey("prompt_eval_count")) promptTokens.observe(message.getLong("prompt_eval_count"));
+        if(message.containsKey("eval_count")) completionTokens.observe(message.getLong("eval_count"));
+        if(message.containsKey("prompt_eval_duration")) prefill.observe(message.getLong("prompt_eval_duration") / NANOS);
+        if(message.containsKey("eval_duration")) generation.observe(message.getLong("eval_duration") / NANOS);
+        if(message.containsKey("load_duration")) load.observe(message.getLong("load_duration") / NANOS);
+        
+        if(message.get("message") instanceof JSONObject reply && reply.get("tool_calls") instanceof List<?> calls) ToolMetrics.requested(calls);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.ai.advisors;
+
+import com.invirgance.example.ai.documents.DotProduct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Responses keyed by the embedding of the question that produced them. A
+ * lookup returns the response of the most similar unexpired question above
+ * the similarity threshold. Entries are evicted least recently used first
+ * once either the entry count or the estimated memory use exceeds its
+ * limit.
+ * <br><br>
+ * Lookups don't take the lock to search. Every change publishes the entries
+ * of each context with their embeddings packed into a single array, so a
+ * lookup scans the vectors of its own context without copying anything, and
+ * hits only lock briefly to update the recency order. Caching a question
+ * similar enough to a cached one replaces it rather than keeping both.
+ *
+ * @author jbanes
+ */
+public class SemanticCache
+{
+    private static final int ENTRY_OVERHEAD = 128;
+    
+    private final DotProduct product = DotProduct.getInstance();
+    private final LinkedHashMap<Long,Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttl;
+    private final float threshold;
+    
+    private long bytes;
+    private long sequence;
+    
+    // Replaced on every change so lookups can read it without locking
+    private volatile Map<String,Bucket> buckets = Map.of();
+    
+    /**
+     * Creates a cache
+     *
+     * @param maxEntries maximum number of responses kept
+     * @param maxBytes maximum estimated memory used by the entries
+     * @param ttl time in milliseconds after which a response expires
+     * @param threshold minimum cosine similarity for a question to match
+     */
+    public SemanticCache(int maxEntries, long maxBytes, long ttl, float threshold)
+    {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttl = ttl;
+        this.threshold = threshold;
+    }
+    
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+    
+    /**
+     * Estimated memory used by the cached embeddings and responses
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getBytes()
+    {
+        return bytes;
+    }
+    
+    /**
+     * Finds the response to the most similar question
+     *
+     * @param context the model or other context the response must have been produced in
+     * @param embedding the normalized embedding of the question
+     * @return the cached response or null if no question is similar enough
+     */
+    public String get(String context, float[] embedding)
+    {
+        var match = find(buckets.get(context), embedding, System.currentTimeMillis());
+        
+        if(match == null) return null;
+        
+        synchronized(this)
+        {
+            // Marks the entry as recently used, unless it was evicted during the scan
+            if(entries.get(match.id) == null) return null;
+        }
+        
+        return match.response;
+    }
+    
+    private Entry find(Bucket bucket, float[] embedding, long now)
+    {
+        float best = threshold;
+        Entry match = null;
+        float score;
+        
+        if(bucket == null || bucket.dimensions != embedding.length) return null;
+        
+        for(int i=0; i<bucket.entries.length; i++)
+        {
+            if(bucket.entries[i].expires < now) continue;
+            
+            score = product.dot(embedding, 0, bucket.vectors, i * bucket.dimensions, bucket.dimensions);
+            
+            if(score >= best)
+            {
+                best = score;
+                match = bucket.entries[i];
+            }
+        }
+        
+        return match;
+    }
+    
+    /**
+     * Caches a response, evicting expired and least recently used entries
+     * as needed
+     *
+     * @param context the model or other context the response was produced in
+     * @param embedding the normalized embedding of the question
+     * @param response the response
+     */
+    public synchronized void put(String context, float[] embedding, String response)
+    {
+        long now = System.currentTimeMillis();
+        var entry = new Entry(++sequence, context, embedding, response, now + ttl);
+        var duplicate = find(buckets.get(context), embedding, now);
+        Iterator<Entry> iterator;
+        Entry eldest;
+        
+        // Concurrent misses on the same question would otherwise cache it repeatedly
+        if(duplicate != null && entries.remove(duplicate.id) != null) bytes -= duplicate.size;
+        
+        entries.put(entry.id, entry);
+        bytes += entry.size;
+        
+        iterator = entries.values().iterator();
+        
+        // Oldest first, so expired entries at the head are dropped along the way
+        while(iterator.hasNext())
+        {
+            eldest = iterator.next();
+            
+            if(entries.size() <= maxEntries && bytes <= maxBytes && eldest.expires >= now) break;
+            
+            iterator.remove();
+            bytes -= eldest.size;
+        }
+        
+        publish();
+    }
+    
+    public synchronized void clear()
+    {
+        entries.clear();
+        bytes = 0;
+        buckets = Map.of();
+    }
+    
+    private void publish()
+    {
+        var grouped = new HashMap<String,List<Entry>>();
+        var buckets = new HashMap<String,Bucket>();
+        
+        for(var entry : entries.values()) grouped.computeIfAbsent(entry.context, key -> new ArrayList<>()).add(entry);
+        
+        for(var group : grouped.entrySet()) buckets.put(group.getKey(), new Bucket(group.getValue()));
+        
+        this.buckets = buckets;
+    }
+    
+    private static class Entry
+    {
+        private final long id;
+        private final String context;
+        private final float[] embedding;
+        private final String response;
+        private final long expires;
+        private final long size;
+        
+        public Entry(long id, String context, float[] embedding, String response, long expires)
+        {
+            this.id = id;
+            this.context = context;
+            this.embedding = embedding;
+            this.response = response;
+            this.expires = expires;
+            
+            // The embedding is held twice, here and packed in its bucket
+            this.size = ENTRY_OVERHEAD + embedding.length * 8L + (context.length() + response.length()) * 2L;
+        }
+    }
+    
+    /**
+     * The entries of a context with their embeddings packed one after the
+     * other. Entries whose embedding has a different size than the most
+     * recently used entry's are left out.
+     */
+    private static class Bucket
+    {
+        private final Entry[] entries;
+        private final float[] vectors;
+        private final int dimensions;
+        
+        public Bucket(List<Entry> list)
+        {
+            this.dimensions = list.get(list.size() - 1).embedding.length;
+            this.entries = list.stream().filter(entry -> entry.embedding.length == dimensions).toArray(Entry[]::new);
+            this.vectors = new float[entries.length * dimensions];
+            
+            for(int i=0; i<entries.length; i++) System.arraycopy(entries[i].embedding, 0, vectors, i * dimensions, dimensions);
+        }
+    }
+}
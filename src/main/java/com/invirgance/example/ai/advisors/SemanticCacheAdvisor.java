@@ -0,0 +1,341 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.ai.advisors;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.ai.Advisor;
+import com.invirgance.convirgance.json.JSONArray;
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.wiring.annotation.Wiring;
+import com.invirgance.example.ai.documents.OllamaEmbedder;
+import com.invirgance.example.metrics.Counter;
+import com.invirgance.example.metrics.MetricsRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers repeated questions from a SemanticCache. The question is embedded
+ * before it is sent to the model, and if a cached question is similar
+ * enough its response replaces the model's reply. Only single-turn chats
+ * are cached, so the advisor is meant for stateless services.
+ * <br><br>
+ * A hit can't skip the call to the model. The Advisor interface only lets
+ * before() modify the request: it can't supply a reply, and throwing from
+ * it fails the chat instead of answering it. So on a hit the request is
+ * reduced to the bare question, without tools and with generation limited
+ * to a single token, and after() swaps the reply for the cached response.
+ * Retrieval configured on the service still runs. Skipping the model
+ * entirely needs the cache to be checked before the binding, which the
+ * advisor can't do.
+ * <br><br>
+ * The question is embedded with OllamaEmbedder, which remembers recent
+ * texts. When the service also has a DocumentsParameter using the same
+ * server and model, the chat is only embedded once.
+ * <br><br>
+ * Hits, misses and embedding failures are counted, and the size of the
+ * cache is published, at /services/metrics labeled with the service name.
+ *
+ * @author jbanes
+ */
+@Wiring
+public class SemanticCacheAdvisor implements Advisor
+{
+    private static final Map<String,SemanticCache> caches = new ConcurrentHashMap<>();
+    
+    private final ThreadLocal<Lookup> pending = new ThreadLocal<>();
+    
+    private String service = "default";
+    private String host;
+    private String model = "nomic-embed-text";
+    private boolean pull = true;
+    private double threshold = 0.95;
+    private int maxEntries = 1000;
+    private long maxBytes = 16 * 1024 * 1024;
+    private long ttl = 60 * 60;
+    
+    private SemanticCache cache;
+    private OllamaEmbedder embedder;
+    private Counter misses;
+    private Counter errors;
+    private volatile Counter hits;
+    
+    /**
+     * Name used to label the metrics of this advisor, typically the name of
+     * the service it is configured on
+     *
+     * @return the service label
+     */
+    public String getService()
+    {
+        return service;
+    }
+    
+    public void setService(String service)
+    {
+        this.service = service;
+        this.hits = null;
+    }
+    
+    /**
+     * Base URL of the Ollama server used for embeddings. Defaults to the
+     * OLLAMA_HOST environment variable or the local server.
+     *
+     * @return the Ollama URL
+     */
+    public String getHost()
+    {
+        return host;
+    }
+    
+    public void setHost(String host)
+    {
+        this.host = host;
+    }
+    
+    public String getModel()
+    {
+        return model;
+    }
+    
+    /**
+     * The embedding model used to compare questions
+     *
+     * @param model the name of the embedding model
+     */
+    public void setModel(String model)
+    {
+        this.model = model;
+    }
+    
+    public boolean isPull()
+    {
+        return pull;
+    }
+    
+    public void setPull(boolean pull)
+    {
+        this.pull = pull;
+    }
+    
+    /**
+     * Minimum cosine similarity between two questions for the cached
+     * response to be used. Values close to 1 only match rephrasings of the
+     * same question.
+     *
+     * @return the similarity threshold
+     */
+    public double getThreshold()
+    {
+        return threshold;
+    }
+    
+    public void setThreshold(double threshold)
+    {
+        this.threshold = threshold;
+    }
+    
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+    
+    public void setMaxEntries(int maxEntries)
+    {
+        this.maxEntries = maxEntries;
+    }
+    
+    /**
+     * Maximum memory used by the cached embeddings and responses, estimated
+     * from their sizes
+     *
+     * @return the limit in bytes
+     */
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+    
+    public void setMaxBytes(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Time after which a cached response is no longer used
+     *
+     * @return the time to live in seconds
+     */
+    public long getTtl()
+    {
+        return ttl;
+    }
+    
+    public void setTtl(long ttl)
+    {
+        this.ttl = ttl;
+    }
+    
+    /**
+     * Fraction of cacheable chats answered from the cache
+     *
+     * @return the hit rate between 0 and 1
+     */
+    public double getHitRate()
+    {
+        long total;
+        
+        if(hits == null) return 0;
+        
+        total = hits.get() + misses.get();
+        
+        return (total < 1) ? 0 : (double)hits.get() / total;
+    }
+    
+    private synchronized void register()
+    {
+        var registry = MetricsRegistry.getRegistry();
+        var service = this.service;
+        
+        if(hits != null) return;
+        
+        cache = new SemanticCache(maxEntries, maxBytes, ttl * 1000, (float)threshold);
+        embedder = new OllamaEmbedder(host, model, pull);
+        
+        // The gauges follow the latest cache of the service if it is reconfigured
+        caches.put(service, cache);
+        
+        misses = registry.counter("ai_cache_misses_total", "Cacheable chats sent to the model", "service", service);
+        errors = registry.counter("ai_cache_errors_total", "Chats that bypassed the cache because the question could not be embedded", "service", service);
+        
+        registry.gauge("ai_cache_entries", "Responses held in the cache", () -> caches.get(service).size(), "service", service);
+        registry.gauge("ai_cache_bytes", "Estimated memory used by the cache", () -> caches.get(service).getBytes(), "service", service);
+        
+        // Assigned last since it signals that registration is complete
+        hits = registry.counter("ai_cache_hits_total", "Chats answered from the cache", "service", service);
+    }
+    
+    /**
+     * The question of a single-turn chat, or null if the chat has history
+     */
+    private static JSONObject question(JSONObject message)
+    {
+        var messages = (message.get("messages") instanceof List<?> list) ? list : List.of();
+        JSONObject question = null;
+        
+        for(var item : messages)
+        {
+            if(!(item instanceof JSONObject entry)) return null;
+            if("system".equals(entry.get("role"))) continue;
+            if(question != null || !"user".equals(entry.get("role"))) return null;
+            
+            question = entry;
+        }
+        
+        return question;
+    }
+    
+    @Override
+    public void before(JSONObject parameters, JSONObject message)
+    {
+        var question = question(message);
+        var context = String.valueOf(message.get("model"));
+        JSONObject options;
+        float[] embedding;
+        String response;
+        
+        pending.remove();
+        
+        if(hits == null) register();
+        if(question == null || question.getString("content") == null) return;
+        
+        try
+        {
+            embedding = embedder.embed(question.getString("content"));
+        }
+        catch(ConvirganceException e)
+        {
+            errors.increment();
+            return;
+        }
+        
+        response = cache.get(context, embedding);
+        
+        pending.set(new Lookup(context, embedding, response));
+        
+        if(response == null)
+        {
+            misses.increment();
+            return;
+        }
+        
+        hits.increment();
+        
+        // The call can't be skipped and the reply is discarded, so make it as cheap as possible
+        options = (message.get("options") instanceof JSONObject json) ? json : new JSONObject();
+        
+        options.put("num_predict", 1);
+        
+        message.put("options", options);
+        message.put("messages", new JSONArray<>(question));
+        message.remove("tools");
+    }
+    
+    @Override
+    public void after(JSONObject parameters, JSONObject message)
+    {
+        var lookup = pending.get();
+        
+        pending.remove();
+        
+        if(lookup == null || message == null || message.containsKey("error")) return;
+        if(!(message.get("message") instanceof JSONObject reply)) return;
+        
+        if(lookup.response != null)
+        {
+            reply.put("content", lookup.response);
+            reply.remove("tool_calls");
+            return;
+        }
+        
+        // Tool calls are answered on a later turn, so there is nothing to cache yet
+        if(reply.containsKey("tool_calls") || reply.getString("content") == null || reply.getString("content").isBlank()) return;
+        
+        cache.put(lookup.context, lookup.embedding, reply.getString("content"));
+    }
+    
+    private static class Lookup
+    {
+        private final String context;
+        private final float[] embedding;
+        private final String response;
+        
+        public Lookup(String context, float[] embedding, String response)
+        {
+            this.context = context;
+            this.embedding = embedding;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.ai.documents;
+
+import com.invirgance.convirgance.ConvirganceException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads documents into an EmbeddingIndex in parallel. Each Markdown file is
+ * read and chunked on its own virtual thread, and the chunks that need
+ * embedding are sent to the model in batches with a bounded number of
+ * requests in flight. Indexing time therefore scales with the number of
+ * cores and the throughput of the model rather than with the number of
+ * files.
+ * <br><br>
+ * Progress is available from the counters while the work is under way,
+ * so callers can report it however they see fit.
+ *
+ * @author jbanes
+ */
+public class DocumentIngestion
+{
+    private final MarkdownChunker chunker;
+    private final OllamaEmbedder embedder;
+    private final int batchSize;
+    private final int concurrency;
+    
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong embedded = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    
+    /**
+     * Creates a pipeline
+     *
+     * @param chunker splits the Markdown files
+     * @param embedder computes the embeddings
+     * @param batchSize number of chunks per embedding request
+     * @param concurrency maximum number of embedding requests in flight
+     */
+    public DocumentIngestion(MarkdownChunker chunker, OllamaEmbedder embedder, int batchSize, int concurrency)
+    {
+        this.chunker = chunker;
+        this.embedder = embedder;
+        this.batchSize = Math.max(1, batchSize);
+        this.concurrency = Math.max(1, concurrency);
+    }
+    
+    public long getFiles()
+    {
+        return files.get();
+    }
+    
+    public long getChunks()
+    {
+        return chunks.get();
+    }
+    
+    public long getEmbedded()
+    {
+        return embedded.get();
+    }
+    
+    /**
+     * Number of chunks that needed embedding, i.e. chunks that were not
+     * already in the index
+     *
+     * @return the number of chunks to embed
+     */
+    public long getTotal()
+    {
+        return total.get();
+    }
+    
+    private static <T> T await(Future<T> future)
+    {
+        try
+        {
+            return future.get();
+        }
+        catch(ExecutionException e)
+        {
+            if(e.getCause() instanceof RuntimeException runtime) throw runtime;
+            
+            throw new ConvirganceException(e.getCause());
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ConvirganceException(e);
+        }
+    }
+    
+    /**
+     * Reads and chunks every Markdown file under a directory in parallel
+     *
+     * @param directory the directory to search recursively
+     * @return the chunks in order of the file paths
+     */
+    public List<String> chunk(Path directory)
+    {
+        var results = new ArrayList<String>();
+        var tasks = new ArrayList<Future<List<String>>>();
+        List<Path> paths;
+        
+        try(var walk = Files.walk(directory))
+        {
+            paths = walk.filter(path -> path.toString().endsWith(".md")).sorted().toList();
+        }
+        catch(IOException e)
+        {
+            throw new ConvirganceException(e);
+        }
+        
+        try(var executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for(var path : paths)
+            {
+                tasks.add(executor.submit(() -> {
+                    var chunks = chunker.chunk(Files.readString(path, StandardCharsets.UTF_8));
+                    
+                    this.files.incrementAndGet();
+                    this.chunks.addAndGet(chunks.size());
+                    
+                    return chunks;
+                }));
+            }
+            
+            for(var task : tasks) results.addAll(await(task));
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Embeds the texts in batches, keeping up to the configured number of
+     * requests in flight. Stops submitting batches after the first failure.
+     *
+     * @param texts the texts to embed
+     * @return the normalized embeddings in the same order as the texts
+     */
+    public float[][] embed(List<String> texts)
+    {
+        var results = new float[texts.size()][];
+        var permits = new Semaphore(concurrency);
+        var failure = new AtomicReference<RuntimeException>();
+        
+        total.addAndGet(texts.size());
+        
+        try(var executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for(int i=0; i<texts.size() && failure.get() == null; i+=batchSize)
+            {
+                int start = i;
+                int end = Math.min(texts.size(), i + batchSize);
+                
+                permits.acquire();
+                
+                executor.submit(() -> {
+                    try
+                    {
+                        var vectors = embedder.embed(texts.subList(start, end));
+                        
+                        System.arraycopy(vectors, 0, results, start, vectors.length);
+                        embedded.addAndGet(vectors.length);
+                    }
+                    catch(RuntimeException e)
+                    {
+                        failure.compareAndSet(null, e);
+                    }
+                    finally
+                    {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ConvirganceException(e);
+        }
+        
+        if(failure.get() != null) throw failure.get();
+        
+        return results;
+    }
+}
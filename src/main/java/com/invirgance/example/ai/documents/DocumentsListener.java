@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.ai.documents;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records where the web application is deployed so that document paths in
+ * the service configuration can be given relative to the application, the
+ * same as MarkdownDocument paths. Also provides a data directory outside
+ * the application for files that must survive a redeploy.
+ * <br><br>
+ * DocumentsParameters register themselves when they are configured, and the
+ * listener starts building the index of every parameter registered by the
+ * time the application is deployed. Services are usually configured when
+ * they are first called, after the deployment, so their parameters start
+ * building on first use instead. The configuration may not be complete
+ * when a parameter registers, so registering never starts a build.
+ *
+ * @author jbanes
+ */
+public class DocumentsListener implements ServletContextListener
+{
+    private static final Set<DocumentsParameter> parameters = ConcurrentHashMap.newKeySet();
+    
+    private static volatile Path root;
+    private static volatile String application = "ROOT";
+    
+    @Override
+    public void contextInitialized(ServletContextEvent event)
+    {
+        var context = event.getServletContext();
+        var path = context.getRealPath("/");
+        var name = context.getContextPath().replaceAll("[^A-Za-z0-9_.-]+", "_").replaceAll("^_+", "");
+        
+        if(path != null) root = Path.of(path);
+        if(!name.isEmpty()) application = name;
+        
+        for(var parameter : parameters) parameter.build();
+    }
+    
+    @Override
+    public void contextDestroyed(ServletContextEvent event)
+    {
+        root = null;
+        
+        parameters.clear();
+    }
+    
+    /**
+     * Registers a parameter whose index is built when the application is
+     * deployed
+     *
+     * @param parameter the parameter to build
+     */
+    static void register(DocumentsParameter parameter)
+    {
+        parameters.add(parameter);
+    }
+    
+    /**
+     * Resolves a file name against the data directory of the application.
+     * The directory is kept under java.io.tmpdir, or under the directory
+     * given by the convirgance.data system property, rather than inside the
+     * application, so its files survive redeploying the application and don't
+     * require it to be deployed from a directory.
+     *
+     * @param name the name of the file in the data directory
+     * @return the resolved path
+     */
+    public static Path data(String name)
+    {
+        var base = System.getProperty("convirgance.data");
+        
+        if(base == null) base = Path.of(System.getProperty("java.io.tmpdir"), "convirgance").toString();
+        
+        return Path.of(base, application).resolve(name);
+    }
+    
+    /**
+     * Resolves a path against the root of the web application. Falls back to
+     * the working directory when the application isn't deployed from a
+     * directory.
+     *
+     * @param path an absolute path or a path relative to the application
+     * @return the resolved path
+     */
+    public static Path resolve(String path)
+    {
+        var resolved = Path.of(path);
+        var root = DocumentsListener.root;
+        
+        if(resolved.isAbsolute() || root == null) return resolved;
+        
+        return root.resolve(resolved);
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.ai.documents;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.web.http.HttpRequest;
+import com.invirgance.convirgance.web.parameter.Parameter;
+import com.invirgance.convirgance.wiring.annotation.Wiring;
+import com.invirgance.example.metrics.MetricsRegistry;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Retrieves the documents most relevant to the chat for inclusion in the
+ * system prompt. Markdown files under the configured path and the inline
+ * texts are split into chunks and embedded into an EmbeddingIndex that is
+ * persisted between restarts. At startup only chunks that are new or have
+ * changed since the index was written are sent to the embedding model,
+ * using a DocumentIngestion to read the files and embed the chunks in
+ * parallel.
+ * <br><br>
+ * The index is built on a background thread, started by DocumentsListener
+ * when the application is deployed or else when the parameter is first
+ * used. Until it is ready, requests wait up to the timeout for it and then
+ * fail, so the client sees that the documents can't be searched yet rather
+ * than the model answering without them. Progress is published as the
+ * ai_documents_* metrics. Relative paths are resolved against the web
+ * application.
+ *
+ * @author jbanes
+ */
+@Wiring
+public class DocumentsParameter implements Parameter
+{
+    private static final ConcurrentHashMap<String,DocumentIngestion> ingestions = new ConcurrentHashMap<>();
+    
+    private String name;
+    private String query = "chat";
+    private String path;
+    private List<String> text = List.of();
+    private String file;
+    private String host;
+    private String model = "nomic-embed-text";
+    private boolean pull = true;
+    private int limit = 5;
+    private double threshold = 0.4;
+    private int chunkSize = 1500;
+    private int batchSize = 32;
+    private int concurrency = 4;
+    private VectorSearch search = new ExactVectorSearch();
+    private long timeout = 10 * 1000;
+    
+    private volatile EmbeddingIndex index;
+    private volatile OllamaEmbedder embedder;
+    private volatile Throwable failure;
+    private Thread builder;
+    
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+    
+    public void setName(String name)
+    {
+        this.name = name;
+        
+        DocumentsListener.register(this);
+    }
+    
+    /**
+     * Name of the request parameter holding the chat message used to search
+     * the documents
+     *
+     * @return the name of the query parameter
+     */
+    public String getQuery()
+    {
+        return query;
+    }
+    
+    public void setQuery(String query)
+    {
+        this.query = query;
+    }
+    
+    /**
+     * Directory searched recursively for Markdown files
+     *
+     * @return the document directory
+     */
+    public String getPath()
+    {
+        return path;
+    }
+    
+    public void setPath(String path)
+    {
+        this.path = path;
+    }
+    
+    /**
+     * Inline documents indexed in addition to the Markdown files
+     *
+     * @return the inline documents
+     */
+    public List<String> getText()
+    {
+        return text;
+    }
+    
+    public void setText(List<String> text)
+    {
+        this.text = text;
+    }
+    
+    /**
+     * Location of the persisted index. Defaults to a file named after the
+     * parameter in the embeddings directory under DocumentsListener.data(),
+     * which survives redeploying the application. Relative paths are
+     * resolved against the web application.
+     *
+     * @return the index file
+     */
+    public String getFile()
+    {
+        return file;
+    }
+    
+    public void setFile(String file)
+    {
+        this.file = file;
+    }
+    
+    /**
+     * Base URL of the Ollama server. Defaults to the OLLAMA_HOST environment
+     * variable or the local server.
+     *
+     * @return the Ollama URL
+     */
+    public String getHost()
+    {
+        return host;
+    }
+    
+    public void setHost(String host)
+    {
+        this.host = host;
+    }
+    
+    public String getModel()
+    {
+        return model;
+    }
+    
+    /**
+     * The embedding model. Changing the model re-embeds every chunk.
+     *
+     * @param model the name of the embedding model
+     */
+    public void setModel(String model)
+    {
+        this.model = model;
+    }
+    
+    public boolean isPull()
+    {
+        return pull;
+    }
+    
+    public void setPull(boolean pull)
+    {
+        this.pull = pull;
+    }
+    
+    /**
+     * Maximum number of chunks included in the prompt
+     *
+     * @return the number of chunks
+     */
+    public int getLimit()
+    {
+        return limit;
+    }
+    
+    public void setLimit(int limit)
+    {
+        this.limit = limit;
+    }
+    
+    /**
+     * Minimum cosine similarity between the chat and a chunk for the chunk
+     * to be included
+     *
+     * @return the similarity threshold
+     */
+    public double getThreshold()
+    {
+        return threshold;
+    }
+    
+    public void setThreshold(double threshold)
+    {
+        this.threshold = threshold;
+    }
+    
+    /**
+     * Maximum number of characters in a chunk
+     *
+     * @return the chunk size
+     */
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+    
+    public void setChunkSize(int chunkSize)
+    {
+        this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Number of chunks sent to the model in each embedding request
+     *
+     * @return the batch size
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+    
+    public void setBatchSize(int batchSize)
+    {
+        this.batchSize = batchSize;
+    }
+    
+    /**
+     * Maximum number of embedding requests sent to the model at the same
+     * time while indexing
+     *
+     * @return the number of concurrent requests
+     */
+    public int getConcurrency()
+    {
+        return concurrency;
+    }
+    
+    public void setConcurrency(int concurrency)
+    {
+        this.concurrency = concurrency;
+    }
+    
+    /**
+     * How the index is searched. Defaults to comparing the chat against every
+     * chunk. Use HnswVectorSearch for large document sets.
+     *
+     * @return the search strategy
+     */
+    public VectorSearch getSearch()
+    {
+        return search;
+    }
+    
+    public void setSearch(VectorSearch search)
+    {
+        this.search = search;
+    }
+    
+    /**
+     * Time in milliseconds a request waits for the index to be built before
+     * failing
+     *
+     * @return the timeout in milliseconds
+     */
+    public long getTimeout()
+    {
+        return timeout;
+    }
+    
+    public void setTimeout(long timeout)
+    {
+        this.timeout = timeout;
+    }
+    
+    private Path getIndexFile()
+    {
+        if(file != null) return DocumentsListener.resolve(file);
+        
+        return DocumentsListener.data("embeddings/" + name + ".embeddings");
+    }
+    
+    private List<String> load(DocumentIngestion ingestion)
+    {
+        var chunks = new ArrayList<String>();
+        
+        if(path != null) chunks.addAll(ingestion.chunk(DocumentsListener.resolve(path)));
+        
+        for(var document : text)
+        {
+            if(!document.isBlank()) chunks.add(document.strip().replaceAll("\\s+", " "));
+        }
+        
+        return chunks;
+    }
+    
+    /**
+     * Starts building the index unless it is built or being built
+     *
+     * @return the thread building the index or null if the index is built
+     */
+    synchronized Thread build()
+    {
+        if(index != null) return null;
+        if(builder != null && builder.isAlive()) return builder;
+        
+        builder = Thread.ofVirtual().name("documents-" + name).start(() -> {
+            try
+            {
+                index();
+            }
+            catch(RuntimeException | Error e)
+            {
+                failure = e;
+            }
+        });
+        
+        return builder;
+    }
+    
+    private void await(Thread builder)
+    {
+        if(builder == null) return;
+        
+        try
+        {
+            builder.join(Duration.ofMillis(Math.max(1, timeout)));
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void index()
+    {
+        var file = getIndexFile();
+        OllamaEmbedder embedder;
+        DocumentIngestion ingestion;
+        EmbeddingIndex loaded;
+        
+        embedder = new OllamaEmbedder(host, model, pull);
+        ingestion = new DocumentIngestion(new MarkdownChunker(chunkSize), embedder, batchSize, concurrency);
+        
+        register(ingestion);
+        
+        loaded = EmbeddingIndex.open(file).update(file, model, load(ingestion), ingestion::embed);
+        
+        search.index(loaded);
+        
+        this.embedder = embedder;
+        this.index = loaded;
+    }
+    
+    private void register(DocumentIngestion ingestion)
+    {
+        var registry = MetricsRegistry.getRegistry();
+        var name = this.name;
+        
+        // The gauges follow the latest ingestion of the parameter
+        ingestions.put(name, ingestion);
+        
+        registry.gauge("ai_documents_files", "Markdown files read while indexing", () -> ingestions.get(name).getFiles(), "name", name);
+        registry.gauge("ai_documents_chunks", "Chunks found while indexing", () -> ingestions.get(name).getChunks(), "name", name);
+        registry.gauge("ai_documents_to_embed", "Chunks that were new or changed and needed embedding", () -> ingestions.get(name).getTotal(), "name", name);
+        registry.gauge("ai_documents_embedded", "Chunks embedded so far", () -> ingestions.get(name).getEmbedded(), "name", name);
+    }
+    
+    @Override
+    public Object getValue(HttpRequest request)
+    {
+        var index = this.index;
+        var failure = this.failure;
+        var chat = request.getParameter(query);
+        var buffer = new StringBuilder();
+        
+        if(index == null && failure == null)
+        {
+            await(build());
+            
+            index = this.index;
+            failure = this.failure;
+        }
+        
+        if(index == null && failure != null)
+        {
+            // Report the failure once, then try again
+            this.failure = null;
+            build();
+            
+            throw new ConvirganceException("Unable to index the documents for " + name, failure);
+        }
+        
+        if(index == null) throw new ConvirganceException("The documents for " + name + " are still being indexed. Try again later.");
+        
+        if(chat == null || chat.isBlank() || index.size() < 1) return "";
+        
+        for(int match : search.search(embedder.embed(chat), limit, (float)threshold))
+        {
+            if(!buffer.isEmpty()) buffer.append("\n\n");
+            
+            buffer.append(index.getText(match));
+        }
+        
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.ai.documents;
+
+/**
+ * Dot product of float vectors stored in arrays. The implementation based on
+ * the incubating Vector API is used when the jdk.incubator.vector module is
+ * available, e.g. when the server is started with
+ * <code>--add-modules jdk.incubator.vector</code>. Otherwise a scalar loop
+ * that the JIT can unroll is used.
+ *
+ * @author jbanes
+ */
+public abstract class DotProduct
+{
+    private static final DotProduct instance = load();
+    
+    /**
+     * Computes the dot product of two vectors
+     *
+     * @param a the array holding the first vector
+     * @param aOffset the index of the first element of the first vector
+     * @param b the array holding the second vector
+     * @param bOffset the index of the first element of the second vector
+     * @param length the number of dimensions
+     * @return the dot product
+     */
+    public abstract float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+    
+    /**
+     * The fastest implementation available in this JVM
+     *
+     * @return the dot product implementation
+     */
+    public static DotProduct getInstance()
+    {
+        return instance;
+    }
+    
+    private static DotProduct load()
+    {
+        DotProduct product;
+        
+        try
+        {
+            // Loaded by name so this class links without the incubator module
+            product = (DotProduct)Class.forName("com.invirgance.example.ai.documents.VectorDotProduct").getDeclaredConstructor().newInstance();
+            
+            product.dot(new float[1], 0, new float[1], 0, 1);
+            
+            return product;
+        }
+        catch(ReflectiveOperationException | LinkageError e)
+        {
+            return new ScalarDotProduct();
+        }
+    }
+}
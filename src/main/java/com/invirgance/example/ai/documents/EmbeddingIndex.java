@@ -0,0 +1,422 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.ai.documents;
+
+import com.invirgance.convirgance.ConvirganceException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Embeddings of a set of text chunks stored in a single binary file that is
+ * memory-mapped when opened. Opening an index costs one mapping regardless
+ * of its size, and the vectors are paged in by the operating system as they
+ * are read. Searching is left to a VectorSearch. Each chunk is stored with the SHA-256 hash of its text, so
+ * updating the index only embeds chunks whose text is new or changed.
+ * <br><br>
+ * The file holds a header with the model name, followed by the hashes, the
+ * normalized vectors as contiguous floats, the offsets of the texts and the
+ * UTF-8 texts themselves. A file that is missing, truncated or written for a
+ * different format is treated as an empty index and rebuilt.
+ *
+ * @author jbanes
+ */
+public class EmbeddingIndex
+{
+    private static final int MAGIC = 0x454D4244;
+    private static final int FORMAT = 1;
+    private static final int HASH_SIZE = 32;
+    private static final int HEADER_SIZE = 5 * 4;
+    
+    private final String model;
+    private final int dimensions;
+    private final int count;
+    private final ByteBuffer hashes;
+    private final FloatBuffer vectors;
+    private final IntBuffer offsets;
+    private final ByteBuffer texts;
+    
+    private volatile Map<String,Integer> lookup;
+    
+    private EmbeddingIndex()
+    {
+        this.model = null;
+        this.dimensions = 0;
+        this.count = 0;
+        this.hashes = ByteBuffer.allocate(0);
+        this.vectors = FloatBuffer.allocate(0);
+        this.offsets = IntBuffer.allocate(1);
+        this.texts = ByteBuffer.allocate(0);
+    }
+    
+    private EmbeddingIndex(ByteBuffer buffer)
+    {
+        long position;
+        long length;
+        byte[] name;
+        
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        
+        if(buffer.limit() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) throw new IllegalArgumentException("Not an embedding index");
+        
+        dimensions = buffer.getInt();
+        count = buffer.getInt();
+        length = buffer.getInt();
+        
+        if(dimensions < 0 || count < 0 || length < 0 || length > buffer.remaining()) throw new IllegalArgumentException("Invalid embedding index header");
+        
+        name = new byte[(int)length];
+        
+        buffer.get(name);
+        
+        model = new String(name, StandardCharsets.UTF_8);
+        position = align(buffer.position());
+        length = (long)count * HASH_SIZE;
+        hashes = slice(buffer, position, length);
+        
+        position += length;
+        length = (long)count * dimensions * 4;
+        vectors = slice(buffer, position, length).asFloatBuffer();
+        
+        position += length;
+        length = (count + 1L) * 4;
+        offsets = slice(buffer, position, length).asIntBuffer();
+        
+        position += length;
+        texts = slice(buffer, position, buffer.limit() - position);
+        
+        if(offsets.get(count) != texts.limit()) throw new IllegalArgumentException("Truncated embedding index");
+    }
+    
+    private static int align(int position)
+    {
+        return (position + 3) & ~3;
+    }
+    
+    private static ByteBuffer slice(ByteBuffer buffer, long position, long length)
+    {
+        if(position + length > buffer.limit()) throw new IllegalArgumentException("Truncated embedding index");
+        
+        return buffer.slice((int)position, (int)length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    
+    /**
+     * Maps an index file. A missing or invalid file results in an empty
+     * index.
+     *
+     * @param file the index file
+     * @return the index
+     */
+    public static EmbeddingIndex open(Path file)
+    {
+        if(!Files.exists(file)) return new EmbeddingIndex();
+        
+        try(var channel = FileChannel.open(file, READ))
+        {
+            return new EmbeddingIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        catch(IllegalArgumentException e)
+        {
+            return new EmbeddingIndex();
+        }
+        catch(IOException e)
+        {
+            throw new ConvirganceException(e);
+        }
+    }
+    
+    /**
+     * The SHA-256 hash identifying a chunk of text
+     *
+     * @param text the text of the chunk
+     * @return the hash
+     */
+    public static byte[] hash(String text)
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        }
+        catch(NoSuchAlgorithmException e)
+        {
+            throw new ConvirganceException(e);
+        }
+    }
+    
+    /**
+     * The model the vectors were computed with. Null for an empty index.
+     *
+     * @return the name of the embedding model
+     */
+    public String getModel()
+    {
+        return model;
+    }
+    
+    public int getDimensions()
+    {
+        return dimensions;
+    }
+    
+    public int size()
+    {
+        return count;
+    }
+    
+    public String getText(int index)
+    {
+        int start = offsets.get(index);
+        var bytes = new byte[offsets.get(index + 1) - start];
+        
+        texts.get(start, bytes);
+        
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    public float[] getVector(int index)
+    {
+        var vector = new float[dimensions];
+        
+        vectors.get(index * dimensions, vector);
+        
+        return vector;
+    }
+    
+    /**
+     * Copies all vectors into a single array, one after the other
+     *
+     * @return the vectors of all chunks
+     */
+    public float[] getVectors()
+    {
+        var results = new float[count * dimensions];
+        
+        vectors.get(0, results);
+        
+        return results;
+    }
+    
+    /**
+     * Finds a chunk by the hash of its text
+     *
+     * @param hash the hash of the text
+     * @return the index of the chunk or -1 if the index doesn't contain it
+     */
+    public int indexOf(byte[] hash)
+    {
+        var lookup = this.lookup;
+        var bytes = new byte[HASH_SIZE];
+        
+        if(lookup == null)
+        {
+            lookup = new HashMap<>(count * 2);
+            
+            for(int i=0; i<count; i++)
+            {
+                hashes.get(i * HASH_SIZE, bytes);
+                lookup.put(HexFormat.of().formatHex(bytes), i);
+            }
+            
+            this.lookup = lookup;
+        }
+        
+        return lookup.getOrDefault(HexFormat.of().formatHex(hash), -1);
+    }
+    
+    /**
+     * Writes a new index for the given chunks. Vectors of chunks found in
+     * this index are reused when the model is the same, and only the
+     * remaining chunks are embedded. Returns this index when it already
+     * holds exactly the given chunks.
+     *
+     * @param file the file to write. The file is replaced atomically.
+     * @param model the model the embedder uses
+     * @param chunks the texts of the chunks. Duplicates are stored once.
+     * @param embedder computes the vectors of all new or changed chunks in one call
+     * @return the updated index
+     */
+    public EmbeddingIndex update(Path file, String model, List<String> chunks, Function<List<String>,float[][]> embedder)
+    {
+        var unique = new LinkedHashMap<String,String>();
+        var missing = new ArrayList<Integer>();
+        var reuse = model.equals(this.model);
+        List<String> texts;
+        float[][] vectors;
+        float[][] embedded;
+        int index;
+        
+        for(var chunk : chunks) unique.putIfAbsent(HexFormat.of().formatHex(hash(chunk)), chunk);
+        
+        texts = new ArrayList<>(unique.values());
+        vectors = new float[texts.size()][];
+        
+        for(int i=0; i<texts.size(); i++)
+        {
+            index = reuse ? indexOf(hash(texts.get(i))) : -1;
+            
+            if(index >= 0) vectors[i] = getVector(index);
+            else missing.add(i);
+        }
+        
+        if(missing.isEmpty() && texts.size() == count) return this;
+        
+        embedded = embedder.apply(missing.stream().map(texts::get).toList());
+        
+        for(int i=0; i<embedded.length; i++) vectors[missing.get(i)] = embedded[i];
+        
+        return write(file, model, texts, vectors);
+    }
+    
+    /**
+     * Writes an index file and maps it
+     *
+     * @param file the file to write. The file is replaced atomically.
+     * @param model the model the vectors were computed with
+     * @param texts the texts of the chunks
+     * @param vectors the normalized vectors of the chunks
+     * @return the new index
+     */
+    public static EmbeddingIndex write(Path file, String model, List<String> texts, float[][] vectors)
+    {
+        var temp = file.resolveSibling(file.getFileName() + ".tmp");
+        var name = model.getBytes(StandardCharsets.UTF_8);
+        var encoded = new byte[texts.size()][];
+        int dimensions = (vectors.length > 0) ? vectors[0].length : 0;
+        int offset = 0;
+        
+        for(int i=0; i<vectors.length; i++)
+        {
+            if(vectors[i].length != dimensions) throw new ConvirganceException("Embeddings have inconsistent dimensions");
+            
+            encoded[i] = texts.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        
+        try
+        {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            
+            try(var output = new Output(FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING)))
+            {
+                output.reserve(HEADER_SIZE + name.length + 3)
+                        .putInt(MAGIC)
+                        .putInt(FORMAT)
+                        .putInt(dimensions)
+                        .putInt(texts.size())
+                        .putInt(name.length)
+                        .put(name)
+                        .put(new byte[align(HEADER_SIZE + name.length) - HEADER_SIZE - name.length]);
+                
+                for(var text : texts) output.reserve(HASH_SIZE).put(hash(text));
+                
+                for(var vector : vectors)
+                {
+                    for(float value : vector) output.reserve(4).putFloat(value);
+                }
+                
+                for(var text : encoded)
+                {
+                    output.reserve(4).putInt(offset);
+                    offset += text.length;
+                }
+                
+                output.reserve(4).putInt(offset);
+                
+                for(var text : encoded) output.write(text);
+            }
+            
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(IOException e)
+        {
+            throw new ConvirganceException(e);
+        }
+        
+        return open(file);
+    }
+    
+    /**
+     * Buffered little-endian writer for the index file
+     */
+    private static class Output implements AutoCloseable
+    {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        
+        public Output(FileChannel channel)
+        {
+            this.channel = channel;
+        }
+        
+        public ByteBuffer reserve(int size) throws IOException
+        {
+            if(buffer.remaining() < size) flush();
+            
+            return buffer;
+        }
+        
+        public void write(byte[] bytes) throws IOException
+        {
+            var wrapped = ByteBuffer.wrap(bytes);
+            
+            flush();
+            
+            while(wrapped.hasRemaining()) channel.write(wrapped);
+        }
+        
+        private void flush() throws IOException
+        {
+            buffer.flip();
+            
+            while(buffer.hasRemaining()) channel.write(buffer);
+            
+            buffer.clear();
+        }
+        
+        @Override
+        public void close() throws IOException
+        {
+            flush();
+            channel.force(true);
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.ai.documents;
+
+import com.invirgance.convirgance.wiring.annotation.Wiring;
+import java.util.Arrays;
+
+/**
+ * Compares the query against every chunk. Always finds the best matches and
+ * is fast enough for a few thousand chunks.
+ *
+ * @author jbanes
+ */
+@Wiring
+public class ExactVectorSearch implements VectorSearch
+{
+    private final DotProduct product = DotProduct.getInstance();
+    
+    private volatile Vectors vectors = new Vectors(new float[0], 0);
+    
+    @Override
+    public void index(EmbeddingIndex index)
+    {
+        vectors = new Vectors(index.getVectors(), index.getDimensions());
+    }
+    
+    @Override
+    public int[] search(float[] query, int limit, float threshold)
+    {
+        var vectors = this.vectors.data;
+        int dimensions = this.vectors.dimensions;
+        int count = (dimensions > 0) ? vectors.length / dimensions : 0;
+        var results = new int[Math.min(limit, count)];
+        var scores = new float[results.length];
+        int found = 0;
+        int position;
+        float score;
+        
+        if(query.length != dimensions || results.length < 1) return new int[0];
+        
+        for(int i=0; i<count; i++)
+        {
+            score = product.dot(query, 0, vectors, i * dimensions, dimensions);
+            
+            if(score < threshold || (found == results.length && score <= scores[found - 1])) continue;
+            
+            position = (found < results.length) ? found++ : found - 1;
+            
+            // Insertion sort into the short list of best matches
+            while(position > 0 && scores[position - 1] < score)
+            {
+                results[position] = results[position - 1];
+                scores[position] = scores[position - 1];
+                position--;
+            }
+            
+            results[position] = i;
+            scores[position] = score;
+        }
+        
+        return Arrays.copyOf(results, found);
+    }
+    
+    private static class Vectors
+    {
+        private final float[] data;
+        private final int dimensions;
+        
+        public Vectors(float[] data, int dimensions)
+        {
+            this.data = data;
+            this.dimensions = dimensions;
+        }
+    }
+}
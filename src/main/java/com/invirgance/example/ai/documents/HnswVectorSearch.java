@@ -0,0 +1,612 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.ai.documents;
+
+import com.invirgance.convirgance.wiring.annotation.Wiring;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Approximate nearest neighbour search using a Hierarchical Navigable Small
+ * World graph. Each chunk is linked to its closest neighbours on the bottom
+ * layer and to a thinning selection of chunks on the layers above, so a
+ * search descends from the top layer and only compares the query against a
+ * few hundred chunks regardless of the size of the index.
+ * <br><br>
+ * The vectors are copied into a single float array so that neighbouring
+ * dimensions are contiguous for the SIMD dot product. The graph is rebuilt
+ * in parallel whenever the index changes. Larger values of m and efConstruction give a
+ * better graph at the cost of memory and build time. Larger values of
+ * efSearch improve recall at the cost of latency.
+ * <br><br>
+ * The visited marks used by a search are as large as the index, so they are
+ * kept in a pool owned by the search and reused by later searches instead
+ * of being allocated per search. The pool only holds as many as there were
+ * concurrent searches, and is emptied whenever the graph is rebuilt.
+ *
+ * @author jbanes
+ */
+@Wiring
+public class HnswVectorSearch implements VectorSearch
+{
+    private final DotProduct product = DotProduct.getInstance();
+    private final ConcurrentLinkedQueue<Visited> pool = new ConcurrentLinkedQueue<>();
+    
+    private int m = 16;
+    private int efConstruction = 100;
+    private int efSearch = 64;
+    private long seed = 42;
+    
+    private volatile Graph graph;
+    
+    /**
+     * Number of links per chunk on the upper layers. The bottom layer allows
+     * twice as many.
+     *
+     * @return the number of links
+     */
+    public int getM()
+    {
+        return m;
+    }
+    
+    public void setM(int m)
+    {
+        if(m < 2) throw new IllegalArgumentException("m must be at least 2");
+        
+        this.m = m;
+    }
+    
+    /**
+     * Number of candidates considered when linking a new chunk into the graph
+     *
+     * @return the size of the candidate list during construction
+     */
+    public int getEfConstruction()
+    {
+        return efConstruction;
+    }
+    
+    public void setEfConstruction(int efConstruction)
+    {
+        this.efConstruction = efConstruction;
+    }
+    
+    /**
+     * Number of candidates tracked while searching. Never less than the
+     * number of results requested.
+     *
+     * @return the size of the candidate list during search
+     */
+    public int getEfSearch()
+    {
+        return efSearch;
+    }
+    
+    public void setEfSearch(int efSearch)
+    {
+        this.efSearch = efSearch;
+    }
+    
+    /**
+     * Seed for assigning chunks to layers. The links between chunks can vary
+     * from one build to the next since chunks are linked in parallel.
+     *
+     * @return the random seed
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+    
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+    
+    @Override
+    public void index(EmbeddingIndex index)
+    {
+        var graph = new Graph(index.getVectors(), index.getDimensions());
+        
+        if(graph.count > 0) insert(graph, 0);
+        
+        // Chunks are linked in parallel, locking each list of links while it is read or changed
+        IntStream.range(1, graph.count).parallel().forEach(node -> insert(graph, node));
+        
+        graph.building = false;
+        this.graph = graph;
+        
+        // Drop the marks sized for the previous graph
+        pool.clear();
+    }
+    
+    private void insert(Graph graph, int node)
+    {
+        var visited = acquire();
+        
+        try
+        {
+            graph.insert(node, visited);
+        }
+        finally
+        {
+            pool.offer(visited);
+        }
+    }
+    
+    private Visited acquire()
+    {
+        var visited = pool.poll();
+        
+        return (visited != null) ? visited : new Visited();
+    }
+    
+    @Override
+    public int[] search(float[] query, int limit, float threshold)
+    {
+        var graph = this.graph;
+        Visited visited;
+        int[] results;
+        int found = 0;
+        long[] candidates;
+        int entry;
+        
+        if(graph == null || graph.count < 1 || query.length != graph.dimensions || limit < 1) return new int[0];
+        
+        visited = acquire();
+        results = new int[limit];
+        
+        try
+        {
+            entry = graph.getEntry();
+            
+            for(int level=graph.getMaxLevel(); level>0; level--) entry = graph.greedy(query, 0, entry, level, visited);
+            
+            candidates = graph.search(query, 0, entry, Math.max(efSearch, limit), 0, visited);
+        }
+        finally
+        {
+            pool.offer(visited);
+        }
+        
+        for(int i=candidates.length-1; i>=0 && found<limit; i--)
+        {
+            if(score(candidates[i]) < threshold) break;
+            
+            results[found++] = id(candidates[i]);
+        }
+        
+        return Arrays.copyOf(results, found);
+    }
+    
+    /**
+     * Packs a score and a chunk into a long that sorts by score, so the
+     * candidate lists can be kept in primitive heaps
+     */
+    private static long encode(float score, int id)
+    {
+        int bits = Float.floatToRawIntBits(score);
+        
+        // Flip the magnitude of negative values so the bits sort like the floats
+        bits ^= (bits >> 31) & 0x7FFFFFFF;
+        
+        return ((long)bits << 32) | (id & 0xFFFFFFFFL);
+    }
+    
+    private static float score(long key)
+    {
+        int bits = (int)(key >>> 32);
+        
+        bits ^= (bits >> 31) & 0x7FFFFFFF;
+        
+        return Float.intBitsToFloat(bits);
+    }
+    
+    private static int id(long key)
+    {
+        return (int)key;
+    }
+    
+    private class Graph
+    {
+        private final int m = HnswVectorSearch.this.m;
+        private final int efConstruction = HnswVectorSearch.this.efConstruction;
+        private final ReentrantLock growing = new ReentrantLock();
+        private final float[] vectors;
+        private final int dimensions;
+        private final int count;
+        private final int[] levels;
+        private final int[][][] links;
+        
+        private volatile long top;
+        private boolean building = true;
+        
+        public Graph(float[] vectors, int dimensions)
+        {
+            var random = new SplittableRandom(seed);
+            double factor = 1 / Math.log(m);
+            
+            this.vectors = vectors;
+            this.dimensions = dimensions;
+            this.count = (dimensions > 0) ? vectors.length / dimensions : 0;
+            this.levels = new int[count];
+            this.links = new int[count][][];
+            
+            for(int node=0; node<count; node++)
+            {
+                levels[node] = (int)(-Math.log(1 - random.nextDouble()) * factor);
+                links[node] = new int[levels[node] + 1][];
+                
+                // Slot 0 holds the number of links
+                for(int i=0; i<=levels[node]; i++) links[node][i] = new int[((i == 0) ? m * 2 : m) + 1];
+            }
+        }
+        
+        private float similarity(float[] query, int offset, int node)
+        {
+            return product.dot(query, offset, vectors, node * dimensions, dimensions);
+        }
+        
+        /**
+         * Copies the links of a node into the scratch space of the visitor
+         *
+         * @return the number of links
+         */
+        private int neighbours(int node, int level, Visited visited)
+        {
+            var neighbours = links[node][level];
+            
+            if(!building) return copy(neighbours, visited);
+            
+            synchronized(neighbours)
+            {
+                return copy(neighbours, visited);
+            }
+        }
+        
+        private int copy(int[] neighbours, Visited visited)
+        {
+            if(visited.neighbours.length < neighbours.length) visited.neighbours = new int[neighbours.length];
+            
+            System.arraycopy(neighbours, 1, visited.neighbours, 0, neighbours[0]);
+            
+            return neighbours[0];
+        }
+        
+        /**
+         * Walks to the neighbour closest to the query until no neighbour is
+         * closer than the current node
+         */
+        public int greedy(float[] query, int offset, int entry, int level, Visited visited)
+        {
+            float best = similarity(query, offset, entry);
+            boolean changed = true;
+            int count;
+            float score;
+            
+            while(changed)
+            {
+                changed = false;
+                count = neighbours(entry, level, visited);
+                
+                for(int i=0; i<count; i++)
+                {
+                    score = similarity(query, offset, visited.neighbours[i]);
+                    
+                    if(score > best)
+                    {
+                        best = score;
+                        entry = visited.neighbours[i];
+                        changed = true;
+                    }
+                }
+            }
+            
+            return entry;
+        }
+        
+        /**
+         * Best-first search of a single layer
+         *
+         * @return up to ef candidates sorted from least to most similar
+         */
+        public long[] search(float[] query, int offset, int entry, int ef, int level, Visited visited)
+        {
+            var candidates = new Heap();
+            var results = new Heap();
+            long candidate;
+            int neighbour;
+            int count;
+            float score;
+            
+            visited.reset(this.count);
+            visited.visit(entry);
+            
+            score = similarity(query, offset, entry);
+            
+            // Candidates are stored negated so the heap yields the most similar first
+            candidates.add(encode(-score, entry));
+            results.add(encode(score, entry));
+            
+            while(candidates.size() > 0)
+            {
+                candidate = candidates.poll();
+                
+                if(results.size() >= ef && -score(candidate) < score(results.peek())) break;
+                
+                count = neighbours(id(candidate), level, visited);
+                
+                for(int i=0; i<count; i++)
+                {
+                    neighbour = visited.neighbours[i];
+                    
+                    if(!visited.visit(neighbour)) continue;
+                    
+                    score = similarity(query, offset, neighbour);
+                    
+                    if(results.size() < ef || score > score(results.peek()))
+                    {
+                        candidates.add(encode(-score, neighbour));
+                        results.add(encode(score, neighbour));
+                        
+                        if(results.size() > ef) results.poll();
+                    }
+                }
+            }
+            
+            return results.sorted();
+        }
+        
+        /**
+         * Chooses neighbours that are closer to the node than to any neighbour
+         * already chosen, which keeps links pointing in different directions.
+         * Remaining slots are filled with the closest of the rejected
+         * candidates.
+         *
+         * @param candidates candidates sorted from least to most similar to the node
+         */
+        private int[] select(long[] candidates, int max)
+        {
+            var selected = new int[max];
+            var rejected = new int[candidates.length];
+            int count = 0;
+            int skipped = 0;
+            boolean diverse;
+            int candidate;
+            
+            for(int i=candidates.length-1; i>=0 && count<max; i--)
+            {
+                candidate = id(candidates[i]);
+                diverse = true;
+                
+                for(int j=0; j<count && diverse; j++)
+                {
+                    diverse = similarity(vectors, candidate * dimensions, selected[j]) <= score(candidates[i]);
+                }
+                
+                if(diverse) selected[count++] = candidate;
+                else rejected[skipped++] = candidate;
+            }
+            
+            for(int i=0; i<skipped && count<max; i++) selected[count++] = rejected[i];
+            
+            return Arrays.copyOf(selected, count);
+        }
+        
+        private void link(int from, int to, int level)
+        {
+            var neighbours = links[from][level];
+            long[] candidates;
+            int[] selected;
+            
+            synchronized(neighbours)
+            {
+                if(neighbours[0] < neighbours.length - 1)
+                {
+                    neighbours[++neighbours[0]] = to;
+                    return;
+                }
+                
+                // Full, so keep the best spread of the existing links and the new one
+                candidates = new long[neighbours[0] + 1];
+                
+                for(int i=1; i<=neighbours[0]; i++) candidates[i - 1] = encode(similarity(vectors, from * dimensions, neighbours[i]), neighbours[i]);
+                
+                candidates[neighbours[0]] = encode(similarity(vectors, from * dimensions, to), to);
+                
+                Arrays.sort(candidates);
+                
+                selected = select(candidates, neighbours.length - 1);
+                neighbours[0] = selected.length;
+                
+                System.arraycopy(selected, 0, neighbours, 1, selected.length);
+            }
+        }
+        
+        public int getEntry()
+        {
+            return (int)top;
+        }
+        
+        public int getMaxLevel()
+        {
+            return (int)(top >>> 32);
+        }
+        
+        public void insert(int node, Visited visited)
+        {
+            int level = levels[node];
+            int offset = node * dimensions;
+            long top = this.top;
+            int entry = (int)top;
+            int maxLevel = (int)(top >>> 32);
+            boolean grows = level > maxLevel;
+            long[] candidates;
+            
+            if(node == 0)
+            {
+                this.top = ((long)level << 32) | node;
+                return;
+            }
+            
+            // Nodes that raise the top of the graph are inserted one at a time
+            if(grows)
+            {
+                growing.lock();
+                
+                top = this.top;
+                entry = (int)top;
+                maxLevel = (int)(top >>> 32);
+                grows = level > maxLevel;
+                
+                if(!grows) growing.unlock();
+            }
+            
+            try
+            {
+                for(int i=maxLevel; i>level; i--) entry = greedy(vectors, offset, entry, i, visited);
+                
+                for(int i=Math.min(level, maxLevel); i>=0; i--)
+                {
+                    candidates = search(vectors, offset, entry, efConstruction, i, visited);
+                    
+                    for(int neighbour : select(candidates, m))
+                    {
+                        link(node, neighbour, i);
+                        link(neighbour, node, i);
+                    }
+                    
+                    entry = id(candidates[candidates.length - 1]);
+                }
+                
+                if(grows) this.top = ((long)level << 32) | node;
+            }
+            finally
+            {
+                if(grows) growing.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Binary min-heap of encoded candidates
+     */
+    private static class Heap
+    {
+        private long[] values = new long[64];
+        private int size;
+        
+        public int size()
+        {
+            return size;
+        }
+        
+        public long peek()
+        {
+            return values[0];
+        }
+        
+        public void add(long value)
+        {
+            int index = size++;
+            int parent;
+            
+            if(index == values.length) values = Arrays.copyOf(values, index * 2);
+            
+            while(index > 0 && values[parent = (index - 1) / 2] > value)
+            {
+                values[index] = values[parent];
+                index = parent;
+            }
+            
+            values[index] = value;
+        }
+        
+        public long poll()
+        {
+            long result = values[0];
+            long last = values[--size];
+            int index = 0;
+            int child;
+            
+            while((child = index * 2 + 1) < size)
+            {
+                if(child + 1 < size && values[child + 1] < values[child]) child++;
+                if(values[child] >= last) break;
+                
+                values[index] = values[child];
+                index = child;
+            }
+            
+            values[index] = last;
+            
+            return result;
+        }
+        
+        public long[] sorted()
+        {
+            var results = Arrays.copyOf(values, size);
+            
+            Arrays.sort(results);
+            
+            return results;
+        }
+    }
+    
+    /**
+     * Marks visited chunks with the number of the current search, so the
+     * marks don't have to be cleared between searches. Also holds the links
+     * of the node being expanded.
+     */
+    private static class Visited
+    {
+        private int[] marks = new int[0];
+        private int[] neighbours = new int[0];
+        private int search;
+        
+        public void reset(int count)
+        {
+            if(marks.length < count) marks = new int[count];
+            
+            if(++search == 0)
+            {
+                Arrays.fill(marks, 0);
+                search = 1;
+            }
+        }
+        
+        public boolean visit(int node)
+        {
+            if(marks[node] == search) return false;
+            
+            marks[node] = search;
+            
+            return true;
+        }
+    }
+}
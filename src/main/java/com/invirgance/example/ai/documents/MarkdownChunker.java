@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.ai.documents;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits Markdown into chunks small enough to embed and to include in a
+ * prompt. A chunk starts at each heading and is split further at paragraph
+ * boundaries when it exceeds the maximum size. Chunks split out of a
+ * section are prefixed with the section heading so they keep their context.
+ *
+ * @author jbanes
+ */
+public class MarkdownChunker
+{
+    private final int maxSize;
+    
+    public MarkdownChunker(int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+    
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+    
+    /**
+     * Splits a Markdown document into chunks
+     *
+     * @param markdown the document
+     * @return the chunks in document order
+     */
+    public List<String> chunk(String markdown)
+    {
+        var chunks = new ArrayList<String>();
+        var chunk = new StringBuilder();
+        var paragraph = new StringBuilder();
+        var fenced = false;
+        String heading = null;
+        
+        for(var line : markdown.split("\\R", -1))
+        {
+            if(line.trim().startsWith("```")) fenced = !fenced;
+            
+            if(!fenced && line.startsWith("#"))
+            {
+                append(chunks, chunk, paragraph, heading);
+                flush(chunks, chunk);
+                
+                heading = line.trim();
+                
+                chunk.append(heading).append("\n\n");
+                
+                // Long headings would crowd out the content of split chunks
+                if(heading.length() > maxSize / 2) heading = null;
+            }
+            else if(!fenced && line.isBlank())
+            {
+                append(chunks, chunk, paragraph, heading);
+            }
+            else
+            {
+                paragraph.append(line).append('\n');
+            }
+        }
+        
+        append(chunks, chunk, paragraph, heading);
+        flush(chunks, chunk);
+        
+        return chunks;
+    }
+    
+    private void append(List<String> chunks, StringBuilder chunk, StringBuilder paragraph, String heading)
+    {
+        int split;
+        
+        if(paragraph.isEmpty()) return;
+        
+        if(chunk.length() + paragraph.length() > maxSize && chunk.length() > ((heading == null) ? 0 : heading.length() + 2))
+        {
+            flush(chunks, chunk);
+            
+            if(heading != null) chunk.append(heading).append("\n\n");
+        }
+        
+        // Paragraphs that don't fit on their own are split at whitespace
+        while(chunk.length() + paragraph.length() > maxSize)
+        {
+            split = paragraph.lastIndexOf(" ", Math.max(0, maxSize - chunk.length()));
+            
+            if(split <= 0) split = Math.min(paragraph.length(), Math.max(1, maxSize - chunk.length()));
+            
+            chunk.append(paragraph, 0, split);
+            paragraph.delete(0, split);
+            flush(chunks, chunk);
+            
+            if(heading != null) chunk.append(heading).append("\n\n");
+        }
+        
+        chunk.append(paragraph).append('\n');
+        paragraph.setLength(0);
+    }
+    
+    private void flush(List<String> chunks, StringBuilder chunk)
+    {
+        var text = chunk.toString().trim();
+        
+        chunk.setLength(0);
+        
+        if(text.isEmpty()) return;
+        
+        // A heading without any content isn't worth embedding
+        if(text.startsWith("#") && !text.contains("\n")) return;
+        
+        chunks.add(text);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.ai.documents;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.json.JSONArray;
+import com.invirgance.convirgance.json.JSONObject;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Computes embeddings with the Ollama /api/embed endpoint. Texts are sent in
+ * batches and the returned vectors are normalized, so the dot product of two
+ * embeddings is their cosine similarity.
+ * <br><br>
+ * Single texts embedded recently are remembered across embedders of the
+ * same server and model. A chat is typically embedded by both the
+ * DocumentsParameter and the SemanticCacheAdvisor of a service, and is only
+ * sent to Ollama once.
+ *
+ * @author jbanes
+ */
+public class OllamaEmbedder
+{
+    private static final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private static final int RECENT = 256;
+    
+    // Least recently used first
+    private static final LinkedHashMap<List<String>,float[]> recent = new LinkedHashMap<>(16, 0.75f, true);
+    
+    private final String host;
+    private final String model;
+    private final boolean pull;
+    
+    private volatile boolean pulled;
+    
+    /**
+     * Creates an embedder for the given model
+     *
+     * @param host base URL of the Ollama server, or null for the OLLAMA_HOST environment variable or the local default
+     * @param model the embedding model
+     * @param pull true to pull the model if Ollama doesn't have it
+     */
+    public OllamaEmbedder(String host, String model, boolean pull)
+    {
+        if(host == null) host = System.getenv("OLLAMA_HOST");
+        if(host == null || host.isBlank()) host = "http://localhost:11434";
+        if(!host.contains("://")) host = "http://" + host;
+        
+        this.host = host.endsWith("/") ? host.substring(0, host.length() - 1) : host;
+        this.model = model;
+        this.pull = pull;
+    }
+    
+    public String getModel()
+    {
+        return model;
+    }
+    
+    private HttpResponse<String> post(String path, JSONObject body) throws IOException, InterruptedException
+    {
+        var request = HttpRequest.newBuilder(URI.create(host + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+    
+    private void pull() throws IOException, InterruptedException
+    {
+        var body = new JSONObject();
+        HttpResponse<String> response;
+        
+        body.put("model", model);
+        body.put("stream", false);
+        
+        response = post("/api/pull", body);
+        
+        if(response.statusCode() != 200) throw new ConvirganceException("Unable to pull " + model + ": " + response.body());
+        
+        pulled = true;
+    }
+    
+    /**
+     * Embeds a single text. Texts embedded recently are answered without a
+     * request to Ollama.
+     *
+     * @param text the text to embed
+     * @return the normalized embedding
+     */
+    public float[] embed(String text)
+    {
+        var key = List.of(host, model, text);
+        float[] embedding;
+        
+        synchronized(recent)
+        {
+            embedding = recent.get(key);
+        }
+        
+        if(embedding == null)
+        {
+            embedding = embed(List.of(text))[0];
+            
+            synchronized(recent)
+            {
+                recent.put(key, embedding);
+                
+                if(recent.size() > RECENT) recent.remove(recent.keySet().iterator().next());
+            }
+        }
+        
+        // Callers may keep or modify the embedding
+        return embedding.clone();
+    }
+    
+    /**
+     * Embeds a batch of texts with a single request
+     *
+     * @param texts the texts to embed
+     * @return the normalized embeddings in the same order as the texts
+     */
+    public float[][] embed(List<String> texts)
+    {
+        var body = new JSONObject();
+        HttpResponse<String> response;
+        
+        body.put("model", model);
+        body.put("input", new JSONArray<>(texts));
+        
+        try
+        {
+            response = post("/api/embed", body);
+            
+            // Ollama answers 404 when the model hasn't been pulled
+            if(response.statusCode() == 404 && pull && !pulled)
+            {
+                pull();
+                
+                response = post("/api/embed", body);
+            }
+            
+            if(response.statusCode() != 200) throw new ConvirganceException("Embedding failed with status " + response.statusCode() + ": " + response.body());
+            
+            return parse(new JSONObject(response.body()), texts.size());
+        }
+        catch(IOException e)
+        {
+            throw new ConvirganceException(e);
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ConvirganceException(e);
+        }
+    }
+    
+    private static float[][] parse(JSONObject response, int count)
+    {
+        var embeddings = (response.get("embeddings") instanceof List<?> list) ? list : List.of();
+        var results = new float[count][];
+        List<?> values;
+        
+        if(embeddings.size() != count) throw new ConvirganceException("Expected " + count + " embeddings but received " + embeddings.size());
+        
+        for(int i=0; i<count; i++)
+        {
+            values = (List<?>)embeddings.get(i);
+            results[i] = new float[values.size()];
+            
+            for(int j=0; j<results[i].length; j++) results[i][j] = ((Number)values.get(j)).floatValue();
+            
+            normalize(results[i]);
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Scales a vector to unit length in place
+     *
+     * @param vector the vector to normalize
+     */
+    public static void normalize(float[] vector)
+    {
+        double norm = 0;
+        
+        for(float value : vector) norm += value * value;
+        
+        if(norm == 0) return;
+        
+        norm = Math.sqrt(norm);
+        
+        for(int i=0; i<vector.length; i++) vector[i] = (float)(vector[i] / norm);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.ai.documents;
+
+/**
+ * Strategy for finding the chunks of an EmbeddingIndex most similar to a
+ * query. Implementations are configured in the service and are given the
+ * index once it has been loaded.
+ *
+ * @author jbanes
+ */
+public interface VectorSearch
+{
+    /**
+     * Prepares the search over an index. Called again when the index is
+     * replaced.
+     *
+     * @param index the index to search
+     */
+    public void index(EmbeddingIndex index);
+    
+    /**
+     * Finds the chunks most similar to a query
+     *
+     * @param query the normalized query vector
+     * @param limit the maximum number of chunks to return
+     * @param threshold the minimum cosine similarity of the chunks returned
+     * @return the indexes of the matching chunks, most similar first
+     */
+    public int[] search(float[] query, int limit, float threshold);
+}
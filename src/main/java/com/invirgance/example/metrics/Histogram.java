@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of observed values over fixed buckets. Each bucket is a
+ * striped counter, so recording a value is a binary search plus an
+ * uncontended increment. Counts are kept per bucket and only made
+ * cumulative when exported.
+ *
+ * @author jbanes
+ */
+public class Histogram
+{
+    private final double[] bounds;
+    private final LongAdder[] counts;
+    private final DoubleAdder sum = new DoubleAdder();
+    
+    /**
+     * Creates a histogram with the given bucket upper bounds. Values above
+     * the last bound are counted in an implicit +Inf bucket.
+     *
+     * @param bounds the upper bounds of the buckets in increasing order
+     */
+    public Histogram(double... bounds)
+    {
+        this.bounds = bounds.clone();
+        this.counts = new LongAdder[bounds.length + 1];
+        
+        for(int i=0; i<counts.length; i++) counts[i] = new LongAdder();
+    }
+    
+    /**
+     * Generates bounds that grow by a constant factor
+     *
+     * @param start the first upper bound
+     * @param factor the ratio between consecutive bounds
+     * @param count the number of bounds
+     * @return the bounds
+     */
+    public static double[] exponential(double start, double factor, int count)
+    {
+        var bounds = new double[count];
+        
+        for(int i=0; i<count; i++) bounds[i] = start * Math.pow(factor, i);
+        
+        return bounds;
+    }
+    
+    public void observe(double value)
+    {
+        int index = Arrays.binarySearch(bounds, value);
+        
+        // Bounds are inclusive, so an exact match belongs to that bucket
+        if(index < 0) index = -(index + 1);
+        
+        counts[index].increment();
+        sum.add(value);
+    }
+    
+    public double[] getBounds()
+    {
+        return bounds.clone();
+    }
+    
+    /**
+     * Number of values observed in each bucket. The last entry holds the
+     * values above the highest bound.
+     *
+     * @return the count of each bucket
+     */
+    public long[] getCounts()
+    {
+        var results = new long[counts.length];
+        
+        for(int i=0; i<counts.length; i++) results[i] = counts[i].sum();
+        
+        return results;
+    }
+    
+    public long getCount()
+    {
+        long count = 0;
+        
+        for(var bucket : counts) count += bucket.sum();
+        
+        return count;
+    }
+    
+    public double getSum()
+    {
+        return sum.sum();
+    }
+    
+    /**
+     * Estimates a quantile as the upper bound of the bucket that contains it
+     *
+     * @param quantile the quantile between 0 and 1
+     * @return the estimate, infinity if it falls above the last bound, or NaN if nothing was observed
+     */
+    public double quantile(double quantile)
+    {
+        var counts = getCounts();
+        long total = 0;
+        long target;
+        
+        for(long count : counts) total += count;
+        
+        if(total < 1) return Double.NaN;
+        
+        target = (long)Math.ceil(quantile * total);
+        total = 0;
+        
+        for(int i=0; i<bounds.length; i++)
+        {
+            total += counts[i];
+            
+            if(total >= target) return bounds[i];
+        }
+        
+        return Double.POSITIVE_INFINITY;
+    }
+}
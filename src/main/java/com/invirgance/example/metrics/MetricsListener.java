@@ -0,0 +1,62 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.metrics;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.ServletRequestEvent;
+import jakarta.servlet.ServletRequestListener;
+
+/**
+ * Stops the periodic tool metrics summary when the web application is
+ * undeployed. Must be declared after AdvisorsListener so that it runs
+ * before the debug log is shut down. Also counts the tool calls of a request
+ * that never returned a result as failures once the request completes.
+ *
+ * @author jbanes
+ */
+public class MetricsListener implements ServletContextListener, ServletRequestListener
+{
+    @Override
+    public void contextInitialized(ServletContextEvent event)
+    {
+    }
+    
+    @Override
+    public void contextDestroyed(ServletContextEvent event)
+    {
+        ToolMetrics.shutdown();
+    }
+    
+    @Override
+    public void requestInitialized(ServletRequestEvent event)
+    {
+    }
+    
+    @Override
+    public void requestDestroyed(ServletRequestEvent event)
+    {
+        ToolMetrics.abandon();
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.metrics;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide collection of named counters and histograms. Each metric has
+ * a name and help text, and one instance per distinct set of labels. The
+ * registry is written out in the Prometheus text exposition format.
+ *
+ * @author jbanes
+ */
+public class MetricsRegistry
+{
+    private static final MetricsRegistry registry = new MetricsRegistry();
+    
+    private final ConcurrentHashMap<String,Family> families = new ConcurrentHashMap<>();
+    
+    public static MetricsRegistry getRegistry()
+    {
+        return registry;
+    }
+    
+    /**
+     * Obtains a counter, creating it on first use
+     *
+     * @param name the metric name
+     * @param help description of the metric
+     * @param labels alternating label names and values
+     * @return the counter for the labels
+     */
+    public Counter counter(String name, String help, String... labels)
+    {
+        return (Counter)family(name, help, "counter").get(labels, Counter::new);
+    }
+    
+    /**
+     * Registers a gauge read from the given source. If a gauge with the same
+     * labels already exists, it is kept.
+     *
+     * @param name the metric name
+     * @param help description of the metric
+     * @param source supplies the current value
+     * @param labels alternating label names and values
+     * @return the gauge for the labels
+     */
+    public Gauge gauge(String name, String help, LongSupplier source, String... labels)
+    {
+        return (Gauge)family(name, help, "gauge").get(labels, () -> new Gauge(source));
+    }
+    
+    /**
+     * Obtains a histogram, creating it on first use. The bounds only apply
+     * when the histogram is created.
+     *
+     * @param name the metric name
+     * @param help description of the metric
+     * @param bounds the upper bounds of the buckets
+     * @param labels alternating label names and values
+     * @return the histogram for the labels
+     */
+    public Histogram histogram(String name, String help, double[] bounds, String... labels)
+    {
+        return (Histogram)family(name, help, "histogram").get(labels, () -> new Histogram(bounds));
+    }
+    
+    private Family family(String name, String help, String type)
+    {
+        var family = families.get(name);
+        
+        if(family == null) family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if(!family.type.equals(type)) throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        
+        return family;
+    }
+    
+    /**
+     * Writes all metrics in the Prometheus text format
+     *
+     * @param output where to write the metrics
+     * @throws IOException if the output fails
+     */
+    public void write(Appendable output) throws IOException
+    {
+        for(var family : new TreeMap<>(families).values())
+        {
+            output.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            output.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            
+            for(var entry : new TreeMap<>(family.children).entrySet())
+            {
+                if(entry.getValue() instanceof Counter counter)
+                {
+                    output.append(family.name).append(braces(entry.getKey())).append(' ').append(Long.toString(counter.get())).append('\n');
+                }
+                else if(entry.getValue() instanceof Gauge gauge)
+                {
+                    output.append(family.name).append(braces(entry.getKey())).append(' ').append(Long.toString(gauge.get())).append('\n');
+                }
+                else if(entry.getValue() instanceof Histogram histogram)
+                {
+                    write(output, family.name, entry.getKey(), histogram);
+                }
+            }
+        }
+    }
+    
+    private void write(Appendable output, String name, String labels, Histogram histogram) throws IOException
+    {
+        var bounds = histogram.getBounds();
+        var counts = histogram.getCounts();
+        var prefix = labels.isEmpty() ? "" : labels + ",";
+        long total = 0;
+        
+        for(int i=0; i<counts.length; i++)
+        {
+            total += counts[i];
+            
+            output.append(name).append("_bucket{").append(prefix).append("le=\"");
+            output.append((i < bounds.length) ? format(bounds[i]) : "+Inf").append("\"} ");
+            output.append(Long.toString(total)).append('\n');
+        }
+        
+        output.append(name).append("_sum").append(braces(labels)).append(' ').append(format(histogram.getSum())).append('\n');
+        output.append(name).append("_count").append(braces(labels)).append(' ').append(Long.toString(total)).append('\n');
+    }
+    
+    private static String braces(String labels)
+    {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+    
+    private static String format(double value)
+    {
+        if(value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long)value);
+        
+        return Double.toString(value);
+    }
+    
+    private static String labels(String... labels)
+    {
+        var buffer = new StringBuilder();
+        
+        if(labels.length % 2 != 0) throw new IllegalArgumentException("Labels must be name and value pairs");
+        
+        for(int i=0; i<labels.length; i+=2)
+        {
+            if(i > 0) buffer.append(',');
+            
+            buffer.append(labels[i]).append("=\"");
+            
+            for(char c : String.valueOf(labels[i+1]).toCharArray())
+            {
+                if(c == '\\' || c == '"') buffer.append('\\').append(c);
+                else if(c == '\n') buffer.append("\\n");
+                else buffer.append(c);
+            }
+            
+            buffer.append('"');
+        }
+        
+        return buffer.toString();
+    }
+    
+    private static class Family
+    {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final Map<String,Object> children = new ConcurrentHashMap<>();
+        
+        public Family(String name, String help, String type)
+        {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+        
+        public Object get(String[] labels, Supplier<Object> supplier)
+        {
+            var key = labels(labels);
+            var child = children.get(key);
+            
+            if(child == null) child = children.computeIfAbsent(key, unused -> supplier.get());
+            
+            return child;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.metrics;
+
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.example.ai.advisors.DebugLog;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instrumentation for the tools offered to a model. Tools are dispatched by
+ * the model binding, so the calls are observed in the messages exchanged
+ * with the model rather than in the tools themselves: MetricsAdvisor reports
+ * the calls a response requests and the results sent back on the next
+ * request. Every call records the call count, latency, size of the result in
+ * characters, failures, and the number of distinct argument combinations
+ * seen (up to a limit). All counters are striped, so concurrent calls don't
+ * contend. Metrics are published through the MetricsRegistry and can
+ * optionally be written to the debug log periodically. The periodic writes
+ * are stopped by shutdown(), which MetricsListener calls when the web
+ * application is undeployed.
+ * <br><br>
+ * The latency of a call is the time from the model requesting it until its
+ * result is sent back, so the calls requested together share the latency of
+ * the batch. A requested call whose result is never sent back, because the
+ * tool threw or the request ended, is counted as a failure.
+ *
+ * @author jbanes
+ */
+public class ToolMetrics
+{
+    private static final double[] SECONDS = Histogram.exponential(0.0001, 2, 18);
+    private static final double[] CHARACTERS = Histogram.exponential(64, 2, 14);
+    private static final int MAX_DISTINCT = 10000;
+    
+    private static final ConcurrentHashMap<String,Tool> tools = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Pending> pending = new ThreadLocal<>();
+    private static final int DUMP_QUEUE = 1000;
+    
+    private static ScheduledExecutorService scheduler;
+    private static ScheduledFuture<?> dump;
+    private static long dumpInterval;
+
+    /**
+     * Records the tool calls requested by a model response. The calls are
+     * pending on the current thread until returned() sees their results.
+     *
+     * @param calls the tool_calls of the response
+     */
+    public static void requested(List<?> calls)
+    {
+        var batch = new Pending();
+        Tool tool;
+        
+        abandon();
+        
+        for(var item : calls)
+        {
+            if(!(item instanceof JSONObject call) || !(call.get("function") instanceof JSONObject function)) continue;
+            
+            tool = tools.computeIfAbsent(String.valueOf(function.get("name")), Tool::new);
+            
+            tool.calls.increment();
+            batch.tools.add(tool);
+            
+            if(tool.distinct.size() < MAX_DISTINCT) tool.distinct.add(String.valueOf(function.get("arguments")));
+        }
+        
+        if(!batch.tools.isEmpty()) pending.set(batch);
+    }
+    
+    /**
+     * Records the results of the pending tool calls on the current thread,
+     * taken from the tool messages at the end of a request to the model.
+     * Pending calls without a result are counted as failures.
+     *
+     * @param messages the messages of the request
+     */
+    public static void returned(List<?> messages)
+    {
+        var batch = pending.get();
+        var results = new ArrayList<JSONObject>();
+        double elapsed;
+        
+        if(batch == null) return;
+        
+        pending.remove();
+        
+        elapsed = (System.nanoTime() - batch.start) / 1_000_000_000.0;
+        
+        for(int i=messages.size()-1; i>=0; i--)
+        {
+            if(!(messages.get(i) instanceof JSONObject message) || !"tool".equals(message.get("role"))) break;
+            
+            results.add(0, message);
+        }
+        
+        for(int i=0; i<batch.tools.size(); i++)
+        {
+            if(i >= results.size())
+            {
+                batch.tools.get(i).failures.increment();
+                continue;
+            }
+            
+            batch.tools.get(i).latency.observe(elapsed);
+            batch.tools.get(i).characters.observe(String.valueOf(results.get(i).get("content")).length());
+        }
+    }
+    
+    /**
+     * Counts the pending tool calls on the current thread as failures. Called
+     * by MetricsListener when a request completes.
+     */
+    public static void abandon()
+    {
+        var batch = pending.get();
+        
+        if(batch == null) return;
+        
+        pending.remove();
+        
+        for(var tool : batch.tools) tool.failures.increment();
+    }
+    
+    public static long getDumpInterval()
+    {
+        return dumpInterval;
+    }
+    
+    /**
+     * Writes a summary of the tool metrics to the standard out DebugLog at a
+     * fixed interval
+     *
+     * @param interval the interval in milliseconds, or zero to stop writing
+     */
+    public static synchronized void setDumpInterval(long interval)
+    {
+        if(dump != null) dump.cancel(false);
+        
+        dump = null;
+        dumpInterval = interval;
+        
+        if(interval < 1) return;
+        
+        if(scheduler == null)
+        {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                var thread = new Thread(runnable, "tool-metrics");
+                
+                thread.setDaemon(true);
+                
+                return thread;
+            });
+        }
+        
+        dump = scheduler.scheduleAtFixedRate(ToolMetrics::dump, interval, interval, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Stops the periodic summary and its thread. Setting a dump interval
+     * afterwards starts them again.
+     */
+    public static synchronized void shutdown()
+    {
+        if(scheduler != null) scheduler.shutdownNow();
+        
+        scheduler = null;
+        dump = null;
+    }
+    
+    private static void dump()
+    {
+        var buffer = new StringBuilder();
+        var log = DebugLog.get(null, DUMP_QUEUE, Long.MAX_VALUE, 0);
+        
+        try
+        {
+            write(buffer);
+        }
+        catch(IOException e)
+        {
+            // StringBuilder doesn't throw
+            throw new IllegalStateException(e);
+        }
+        
+        buffer.toString().lines().forEach(log::offer);
+    }
+    
+    /**
+     * Writes a one line summary per tool
+     *
+     * @param output where to write the summary
+     * @throws IOException if the output fails
+     */
+    public static void write(Appendable output) throws IOException
+    {
+        Map<String,Tool> sorted = new TreeMap<>(tools);
+        
+        output.append("tool calls failures distinct p50_ms p95_ms mean_chars\n");
+        
+        for(var tool : sorted.values())
+        {
+            long calls = tool.calls.get();
+            long measured = tool.characters.getCount();
+            
+            output.append(tool.name).append(' ').append(Long.toString(calls));
+            output.append(' ').append(Long.toString(tool.failures.get()));
+            output.append(' ').append(Integer.toString(tool.distinct.size()));
+            output.append(' ').append(String.format("%.2f", (measured < 1) ? 0 : tool.latency.quantile(0.5) * 1000));
+            output.append(' ').append(String.format("%.2f", (measured < 1) ? 0 : tool.latency.quantile(0.95) * 1000));
+            output.append(' ').append(Long.toString((measured < 1) ? 0 : (long)(tool.characters.getSum() / measured)));
+            output.append('\n');
+        }
+    }
+    
+    private static class Tool
+    {
+        private final String name;
+        private final Counter calls;
+        private final Counter failures;
+        private final Histogram latency;
+        private final Histogram characters;
+        private final Set<String> distinct = ConcurrentHashMap.newKeySet();
+        
+        public Tool(String name)
+        {
+            var registry = MetricsRegistry.getRegistry();
+            
+            this.name = name;
+            this.calls = registry.counter("ai_tool_calls_total", "Calls made by the model to a tool", "tool", name);
+            this.failures = registry.counter("ai_tool_failures_total", "Tool calls whose result was never sent back to the model", "tool", name);
+            this.latency = registry.histogram("ai_tool_latency_seconds", "Time from the model requesting a tool call until its result is sent back", SECONDS, "tool", name);
+            this.characters = registry.histogram("ai_tool_result_characters", "Size of the tool result in characters", CHARACTERS, "tool", name);
+            
+            registry.gauge("ai_tool_distinct_arguments", "Distinct argument combinations seen, up to " + MAX_DISTINCT, () -> distinct.size(), "tool", name);
+        }
+    }
+    
+    private static class Pending
+    {
+        private final long start = System.nanoTime();
+        private final List<Tool> tools = new ArrayList<>();
+    }
+}
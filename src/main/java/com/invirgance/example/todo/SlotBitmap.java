@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.todo;
+
+import java.util.Arrays;
+
+/**
+ * Set of slot numbers that finds its lowest member without scanning. Each
+ * level holds one bit per word of the level below, set when that word has
+ * any bit set, so add, remove and first touch one word per level: three
+ * levels cover 262,144 slots.
+ * <br><br>
+ * The bitmap is not thread safe. TodoStore only accesses it while holding
+ * its lock.
+ *
+ * @author jbanes
+ */
+class SlotBitmap
+{
+    private long[][] levels;
+    
+    SlotBitmap(int capacity)
+    {
+        resize(capacity);
+    }
+    
+    /**
+     * Changes the number of slots the bitmap can hold. Slots that still fit
+     * keep their membership.
+     *
+     * @param capacity the number of slots
+     */
+    public void resize(int capacity)
+    {
+        var base = new long[Math.max(1, (capacity + 63) >>> 6)];
+        int count = 1;
+        
+        if(levels != null) System.arraycopy(levels[0], 0, base, 0, Math.min(base.length, levels[0].length));
+        
+        for(int words=base.length; words>1; words=(words + 63) >>> 6) count++;
+        
+        levels = new long[count][];
+        levels[0] = base;
+        
+        for(int level=1; level<count; level++)
+        {
+            levels[level] = new long[(levels[level - 1].length + 63) >>> 6];
+            
+            for(int word=0; word<levels[level - 1].length; word++)
+            {
+                if(levels[level - 1][word] != 0) levels[level][word >>> 6] |= 1L << (word & 63);
+            }
+        }
+    }
+    
+    public void add(int slot)
+    {
+        long before;
+        
+        for(var bits : levels)
+        {
+            before = bits[slot >>> 6];
+            bits[slot >>> 6] = before | (1L << (slot & 63));
+            
+            // The levels above already record a non-empty word
+            if(before != 0) return;
+            
+            slot >>>= 6;
+        }
+    }
+    
+    public void remove(int slot)
+    {
+        for(var bits : levels)
+        {
+            bits[slot >>> 6] &= ~(1L << (slot & 63));
+            
+            if(bits[slot >>> 6] != 0) return;
+            
+            slot >>>= 6;
+        }
+    }
+    
+    public boolean contains(int slot)
+    {
+        return (levels[0][slot >>> 6] & (1L << (slot & 63))) != 0;
+    }
+    
+    /**
+     * The lowest slot in the set
+     *
+     * @return the lowest slot or -1 if the set is empty
+     */
+    public int first()
+    {
+        int index = 0;
+        
+        if(levels[levels.length - 1][0] == 0) return -1;
+        
+        for(int level=levels.length-1; level>=0; level--)
+        {
+            index = (index << 6) + Long.numberOfTrailingZeros(levels[level][index]);
+        }
+        
+        return index;
+    }
+    
+    public void clear()
+    {
+        for(var bits : levels) Arrays.fill(bits, 0);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.todo;
+
+import com.invirgance.convirgance.wiring.annotation.Wiring;
+import static com.invirgance.example.todo.TodoList.Status.*;
+
+/**
+ * Evicts the least recently updated CANCEL task, or if there are none, the
+ * least recently updated DONE task. Open tasks are never evicted, so inserts
+ * fail once the list is full of open tasks. This is the default policy.
+ *
+ * @author jbanes
+ */
+@Wiring
+public class StateEvictionPolicy implements EvictionPolicy
+{
+    @Override
+    public long select(TodoStore.View view, long now)
+    {
+        long id = view.oldest(CANCEL);
+        
+        if(id < 0) id = view.oldest(DONE);
+        
+        return id;
+    }
+    
+    @Override
+    public boolean equals(Object obj)
+    {
+        return (obj != null && obj.getClass() == getClass());
+    }
+    
+    @Override
+    public int hashCode()
+    {
+        return getClass().hashCode();
+    }
+}
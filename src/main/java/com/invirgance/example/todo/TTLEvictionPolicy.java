@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.todo;
+
+import com.invirgance.convirgance.wiring.annotation.Wiring;
+import java.util.Objects;
+
+/**
+ * Evicts the least recently updated task if it has not been updated within
+ * the time-to-live. When no task has expired, the fallback policy is
+ * consulted instead.
+ *
+ * @author jbanes
+ */
+@Wiring
+public class TTLEvictionPolicy implements EvictionPolicy
+{
+    private long ttl = 7 * 24 * 60 * 60 * 1000L;
+    private EvictionPolicy fallback = new StateEvictionPolicy();
+    
+    /**
+     * Time in milliseconds after the last update at which a task expires.
+     * Defaults to seven days.
+     *
+     * @return the time-to-live in milliseconds
+     */
+    public long getTtl()
+    {
+        return ttl;
+    }
+    
+    public void setTtl(long ttl)
+    {
+        this.ttl = ttl;
+    }
+    
+    /**
+     * Policy used when no task has expired. Defaults to StateEvictionPolicy.
+     * May be set to null to only evict expired tasks.
+     *
+     * @return the fallback policy
+     */
+    public EvictionPolicy getFallback()
+    {
+        return fallback;
+    }
+    
+    public void setFallback(EvictionPolicy fallback)
+    {
+        this.fallback = fallback;
+    }
+    
+    @Override
+    public long select(TodoStore.View view, long now)
+    {
+        long id = view.oldest();
+        
+        if(id >= 0 && now - view.getUpdated(id) > ttl) return id;
+        if(fallback != null) return fallback.select(view, now);
+        
+        return -1;
+    }
+    
+    @Override
+    public boolean equals(Object obj)
+    {
+        if(!(obj instanceof TTLEvictionPolicy other)) return false;
+        
+        return (ttl == other.ttl && Objects.equals(fallback, other.fallback));
+    }
+    
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(ttl, fallback);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.todo;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Conditional GET support for pages and services that render a todo list.
+ * The ETag is derived from the store instance and version, so a client that
+ * already holds the current list receives a 304 without the list being read
+ * or serialized. Clients are asked to revalidate on every use.
+ * <br><br>
+ * The "partition" init parameter names the request parameter holding the
+ * list key, matching the partition configured on the TodoList binding. It
+ * defaults to "list".
+ *
+ * @author jbanes
+ */
+public class TodoETagFilter implements Filter
+{
+    private static final String STARTED = Long.toString(System.currentTimeMillis(), 36);
+    
+    private String partition = "list";
+    
+    @Override
+    public void init(FilterConfig config) throws ServletException
+    {
+        if(config.getInitParameter("partition") != null) partition = config.getInitParameter("partition");
+    }
+    
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException
+    {
+        var http = (HttpServletRequest)request;
+        String tag;
+        TodoStore store;
+        
+        if(!http.getMethod().equals("GET") && !http.getMethod().equals("HEAD"))
+        {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        TodoList.select(request.getParameter(partition));
+        
+        // Read the version before rendering so a concurrent change can only
+        // make the tag older than the content, never newer
+        store = TodoList.store();
+        tag = "\"" + STARTED + "-" + store.getInstance() + "-" + store.getVersion() + "\"";
+        
+        ((HttpServletResponse)response).setHeader("ETag", tag);
+        ((HttpServletResponse)response).setHeader("Cache-Control", "no-cache");
+        
+        if(matches(http.getHeader("If-None-Match"), tag))
+        {
+            ((HttpServletResponse)response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        
+        chain.doFilter(request, response);
+    }
+    
+    private static boolean matches(String header, String tag)
+    {
+        if(header == null) return false;
+        
+        for(var value : header.split(","))
+        {
+            value = value.strip();
+            
+            if(value.startsWith("W/")) value = value.substring(2);
+            if(value.equals(tag) || value.equals("*")) return true;
+        }
+        
+        return false;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.todo;
+
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.example.todo.TodoList.Status;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Change feed for a single todo list, formatted as Server-Sent Events. Each
+ * change becomes an event whose id is the store instance and version, so a
+ * client that reconnects with the last id it saw receives only the changes
+ * it missed. The most recent changes are kept in a ring buffer for this
+ * purpose. When the missed changes are no longer available, the client is
+ * sent a "reset" event and is expected to reload the whole list.
+ * <br><br>
+ * Every subscriber has a bounded queue. A subscriber that falls too far
+ * behind has its queue replaced with a single reset event rather than
+ * holding up the store or growing without limit.
+ *
+ * @author jbanes
+ */
+public class TodoFeed implements TodoListener
+{
+    private final long instance;
+    private final long[] versions;
+    private final String[] frames;
+    private final int queueSize;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    
+    private int head;
+    private int count;
+    private long latest;
+    private volatile boolean closed;
+    
+    public TodoFeed(TodoStore store, int backlog, int queueSize)
+    {
+        this.instance = store.getInstance();
+        this.latest = store.getVersion();
+        this.versions = new long[backlog];
+        this.frames = new String[backlog];
+        this.queueSize = queueSize;
+    }
+    
+    private String id(long version)
+    {
+        return instance + "-" + version;
+    }
+    
+    private String reset(long version)
+    {
+        return "id: " + id(version) + "\nevent: reset\ndata: {}\n\n";
+    }
+    
+    private synchronized void publish(long version, String event, JSONObject data)
+    {
+        var frame = "id: " + id(version) + "\nevent: " + event + "\ndata: " + data.toString() + "\n\n";
+        
+        versions[(head + count) % versions.length] = version;
+        frames[(head + count) % frames.length] = frame;
+        
+        if(count < versions.length) count++;
+        else head = (head + 1) % versions.length;
+        
+        latest = version;
+        
+        for(var subscriber : subscribers) subscriber.offer(frame, version);
+    }
+    
+    @Override
+    public void inserted(long version, long id, String text, long time)
+    {
+        var data = new JSONObject();
+        
+        data.put("id", id);
+        data.put("text", text);
+        data.put("state", Status.TODO.toString());
+        data.put("created", time);
+        data.put("updated", time);
+        
+        publish(version, "insert", data);
+    }
+    
+    @Override
+    public void updated(long version, long id, Status state, long time)
+    {
+        var data = new JSONObject();
+        
+        data.put("id", id);
+        data.put("state", state.toString());
+        data.put("updated", time);
+        
+        publish(version, "update", data);
+    }
+    
+    @Override
+    public void removed(long version, long id)
+    {
+        var data = new JSONObject();
+        
+        data.put("id", id);
+        
+        publish(version, "remove", data);
+    }
+    
+    /**
+     * Registers a new subscriber. If the last event id is given, the changes
+     * made since that event are queued for the subscriber first.
+     *
+     * @param lastEventId the id of the last event the client received or null
+     * @return the new subscriber
+     */
+    public synchronized Subscriber subscribe(String lastEventId)
+    {
+        var subscriber = new Subscriber(queueSize);
+        long last = resumeFrom(lastEventId);
+        long oldest = (count > 0) ? versions[head] : latest + 1;
+        
+        if(lastEventId != null && (last < 0 || last > latest || last + 1 < oldest))
+        {
+            subscriber.offer(reset(latest), latest);
+        }
+        else if(lastEventId != null)
+        {
+            for(int i=0; i<count; i++)
+            {
+                int index = (head + i) % versions.length;
+                
+                if(versions[index] > last) subscriber.offer(frames[index], versions[index]);
+            }
+        }
+        
+        if(closed) subscriber.close();
+        else subscribers.add(subscriber);
+        
+        return subscriber;
+    }
+    
+    private long resumeFrom(String lastEventId)
+    {
+        int index = (lastEventId == null) ? -1 : lastEventId.indexOf('-');
+        
+        if(index < 0 || !lastEventId.substring(0, index).equals(Long.toString(instance))) return -1;
+        
+        try
+        {
+            return Long.parseLong(lastEventId.substring(index + 1));
+        }
+        catch(NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+    
+    public void unsubscribe(Subscriber subscriber)
+    {
+        subscribers.remove(subscriber);
+    }
+    
+    public boolean hasSubscribers()
+    {
+        return !subscribers.isEmpty();
+    }
+    
+    /**
+     * Disconnects all subscribers. Called when the list is discarded from
+     * memory. Clients reconnect and are reset against the new instance.
+     */
+    public void close()
+    {
+        closed = true;
+        
+        for(var subscriber : subscribers) subscriber.close();
+        
+        subscribers.clear();
+    }
+    
+    public class Subscriber
+    {
+        private final ArrayBlockingQueue<String> queue;
+        private volatile boolean closed;
+        
+        private Subscriber(int size)
+        {
+            this.queue = new ArrayBlockingQueue<>(size);
+        }
+        
+        private void offer(String frame, long version)
+        {
+            if(queue.offer(frame)) return;
+            
+            // Too far behind. Drop the backlog and have the client reload.
+            queue.clear();
+            queue.offer(reset(version));
+        }
+        
+        private void close()
+        {
+            closed = true;
+            
+            queue.offer("");
+        }
+        
+        public boolean isClosed()
+        {
+            return closed;
+        }
+        
+        /**
+         * Waits for the next event. The calling thread parks while waiting,
+         * which costs next to nothing on a virtual thread.
+         *
+         * @param timeout the maximum time to wait in milliseconds
+         * @return the formatted event, or null if the wait timed out or the feed was closed
+         * @throws InterruptedException if the thread is interrupted while waiting
+         */
+        public String next(long timeout) throws InterruptedException
+        {
+            var frame = queue.poll(timeout, TimeUnit.MILLISECONDS);
+            
+            if(closed || frame == null || frame.isEmpty()) return null;
+            
+            return frame;
+        }
+    }
+}
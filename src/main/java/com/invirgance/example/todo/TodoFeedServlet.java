@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.todo;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams the changes to a todo list as Server-Sent Events. The request is
+ * switched to async mode and each subscriber is served by a virtual thread
+ * that parks on the subscriber's queue, so idle connections cost a small
+ * amount of memory and no polling. A comment is sent when the connection
+ * has been quiet for a while to detect clients that went away.
+ * <br><br>
+ * The list is selected with the "list" request parameter, the same as the
+ * todo service. Reconnecting clients resume from the Last-Event-ID header.
+ *
+ * @author jbanes
+ */
+public class TodoFeedServlet extends HttpServlet
+{
+    private static final long serialVersionUID = 1L;
+    private static final long HEARTBEAT = 30 * 1000;
+    
+    private String partition = "list";
+    
+    @Override
+    public void init() throws ServletException
+    {
+        if(getInitParameter("partition") != null) partition = getInitParameter("partition");
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException
+    {
+        String lastEventId = request.getHeader("Last-Event-ID");
+        TodoFeed.Subscriber subscriber;
+        TodoFeed feed;
+        
+        if(lastEventId == null) lastEventId = request.getParameter("lastEventId");
+        
+        TodoList.select(request.getParameter(partition));
+        
+        feed = TodoList.feed();
+        subscriber = feed.subscribe(lastEventId);
+        
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no");
+        
+        var async = request.startAsync();
+        var output = response.getOutputStream();
+        
+        async.setTimeout(0);
+        
+        Thread.ofVirtual().name("todo-feed").start(() -> {
+            try
+            {
+                output.write("retry: 3000\n\n".getBytes(StandardCharsets.UTF_8));
+                output.flush();
+                
+                while(!subscriber.isClosed())
+                {
+                    var frame = subscriber.next(HEARTBEAT);
+                    
+                    if(frame == null && subscriber.isClosed()) break;
+                    
+                    output.write((frame == null ? ":\n\n" : frame).getBytes(StandardCharsets.UTF_8));
+                    output.flush();
+                }
+            }
+            catch(IOException | InterruptedException e)
+            {
+                // Client disconnected or the server is shutting down
+            }
+            finally
+            {
+                feed.unsubscribe(subscriber);
+                async.complete();
+            }
+        });
+    }
+}
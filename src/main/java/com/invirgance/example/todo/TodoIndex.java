@@ -0,0 +1,252 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.todo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Inverted index over the text of todo records. Each word maps to the ids of
+ * the records containing it, and each three letter fragment of a word maps
+ * to the ids of the records with a word containing that fragment. Postings
+ * are kept sorted by id, which is cheap because ids are assigned in
+ * increasing order. The index is maintained incrementally as records are
+ * added and removed.
+ * <br><br>
+ * The index is not thread safe. TodoStore only accesses it while holding its
+ * lock.
+ *
+ * @author jbanes
+ */
+public class TodoIndex
+{
+    private static final int GRAM = 3;
+    private static final long[] EMPTY = new long[0];
+    
+    private final HashMap<String,Postings> words = new HashMap<>();
+    private final HashMap<String,Postings> grams = new HashMap<>();
+    private int documents;
+    
+    /**
+     * Splits text into lowercase words made of letters and digits
+     *
+     * @param text the text to split
+     * @return the distinct words in order of appearance
+     */
+    public static Set<String> tokenize(String text)
+    {
+        var tokens = new LinkedHashSet<String>();
+        int start = -1;
+        
+        if(text == null) return tokens;
+        
+        for(int i=0; i<=text.length(); i++)
+        {
+            if(i < text.length() && Character.isLetterOrDigit(text.charAt(i)))
+            {
+                if(start < 0) start = i;
+            }
+            else if(start >= 0)
+            {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        
+        return tokens;
+    }
+    
+    private static Set<String> grams(Set<String> tokens)
+    {
+        var results = new LinkedHashSet<String>();
+        
+        for(var token : tokens)
+        {
+            for(int i=0; i+GRAM<=token.length(); i++) results.add(token.substring(i, i + GRAM));
+        }
+        
+        return results;
+    }
+    
+    public int size()
+    {
+        return documents;
+    }
+    
+    public void add(long id, String text)
+    {
+        var tokens = tokenize(text);
+        
+        for(var token : tokens) words.computeIfAbsent(token, key -> new Postings()).add(id);
+        for(var gram : grams(tokens)) grams.computeIfAbsent(gram, key -> new Postings()).add(id);
+        
+        documents++;
+    }
+    
+    public void remove(long id, String text)
+    {
+        var tokens = tokenize(text);
+        
+        for(var token : tokens) remove(words, token, id);
+        for(var gram : grams(tokens)) remove(grams, gram, id);
+        
+        documents--;
+    }
+    
+    private void remove(HashMap<String,Postings> map, String key, long id)
+    {
+        var postings = map.get(key);
+        
+        if(postings == null) return;
+        
+        postings.remove(id);
+        
+        if(postings.size == 0) map.remove(key);
+    }
+    
+    /**
+     * Number of records containing a word
+     *
+     * @param word a lowercase word
+     * @return the number of records containing the word
+     */
+    public int frequency(String word)
+    {
+        var postings = words.get(word);
+        
+        return (postings == null) ? 0 : postings.size;
+    }
+    
+    /**
+     * Ids of the records containing a word
+     *
+     * @param word a lowercase word
+     * @return the ids in increasing order
+     */
+    public long[] word(String word)
+    {
+        var postings = words.get(word);
+        
+        return (postings == null) ? EMPTY : Arrays.copyOf(postings.ids, postings.size);
+    }
+    
+    /**
+     * Ids of the records that may contain the fragment as part of a word.
+     * Fragments shorter than three characters only match whole words. Longer
+     * fragments can produce false positives, so the caller must check the
+     * text of each candidate.
+     *
+     * @param fragment a lowercase word or part of a word
+     * @return the candidate ids in increasing order
+     */
+    public long[] candidates(String fragment)
+    {
+        List<Postings> lists = new ArrayList<>();
+        long[] results;
+        int count;
+        
+        if(fragment.length() < GRAM) return word(fragment);
+        
+        for(int i=0; i+GRAM<=fragment.length(); i++)
+        {
+            var postings = grams.get(fragment.substring(i, i + GRAM));
+            
+            if(postings == null) return EMPTY;
+            
+            lists.add(postings);
+        }
+        
+        // Intersect starting from the shortest list to keep the work small
+        lists.sort((left, right) -> Integer.compare(left.size, right.size));
+        
+        results = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+        count = results.length;
+        
+        for(int i=1; i<lists.size() && count>0; i++)
+        {
+            count = intersect(results, count, lists.get(i));
+        }
+        
+        return Arrays.copyOf(results, count);
+    }
+    
+    private static int intersect(long[] results, int count, Postings postings)
+    {
+        int retained = 0;
+        
+        for(int i=0; i<count; i++)
+        {
+            if(postings.contains(results[i])) results[retained++] = results[i];
+        }
+        
+        return retained;
+    }
+    
+    private static class Postings
+    {
+        private long[] ids = new long[4];
+        private int size;
+        
+        private int find(long id)
+        {
+            return Arrays.binarySearch(ids, 0, size, id);
+        }
+        
+        public boolean contains(long id)
+        {
+            return find(id) >= 0;
+        }
+        
+        public void add(long id)
+        {
+            int index = (size == 0 || ids[size-1] < id) ? -(size + 1) : find(id);
+            
+            if(index >= 0) return;
+            
+            index = -(index + 1);
+            
+            if(size >= ids.length) ids = Arrays.copyOf(ids, ids.length * 2);
+            
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            
+            ids[index] = id;
+            size++;
+        }
+        
+        public void remove(long id)
+        {
+            int index = find(id);
+            
+            if(index < 0) return;
+            
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            
+            size--;
+        }
+    }
+}
@@ -0,0 +1,616 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.todo;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.example.todo.TodoList.Status;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Append-only log and compacted snapshot for a single TodoStore. Changes are
+ * queued by the store while it holds its lock and are written to disk by a
+ * shared background thread. Every flush writes all pending changes with a
+ * single force, so the cost on the insert/update path is one small
+ * allocation. Once the log grows larger than the last snapshot, a new
+ * snapshot of the store is written and the log is truncated. Recovery reads at most one
+ * snapshot and one bounded log, however long the history is.
+ * <br><br>
+ * Changes made within the last commit interval may be lost if the process
+ * terminates abnormally. A batch that fails to be written is kept and
+ * retried on the next commit interval. Until a retry succeeds, changes to
+ * the store fail with the write error rather than piling up unwritten.
+ * <br><br>
+ * The background thread is started when the first journal is created and
+ * stopped by shutdown(), which TodoContextListener calls when the web
+ * application is undeployed.
+ *
+ * @author jbanes
+ */
+public class TodoJournal
+{
+    private static final byte INSERT = 1;
+    private static final byte UPDATE = 2;
+    private static final byte REMOVE = 3;
+    
+    private static final int MAGIC = 0x544F444F;
+    private static final long COMMIT_INTERVAL = 50;
+    private static final long COMPACT_SIZE = 1024 * 1024;
+    
+    private static final Set<TodoJournal> dirty = ConcurrentHashMap.newKeySet();
+    private static ScheduledExecutorService flusher;
+    
+    private final ConcurrentLinkedQueue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private final Path log;
+    private final Path snapshot;
+    
+    private TodoStore store;
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private long committed = -1;
+    private volatile ConvirganceException failure;
+    private long snapshotVersion;
+    private long snapshotSize;
+    
+    /**
+     * Creates a journal for the named partition in the given directory
+     *
+     * @param directory directory holding the journal files
+     * @param name partition name. Names that are not safe file names are hashed.
+     * Null or empty selects the default partition.
+     */
+    public TodoJournal(Path directory, String name)
+    {
+        var file = toFileName(name);
+        
+        try
+        {
+            Files.createDirectories(directory);
+        }
+        catch(IOException e)
+        {
+            throw new ConvirganceException(e);
+        }
+        
+        this.log = directory.resolve(file + ".log");
+        this.snapshot = directory.resolve(file + ".snapshot");
+        
+        start();
+    }
+    
+    private static synchronized void start()
+    {
+        if(flusher != null) return;
+        
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "todo-journal");
+            
+            thread.setDaemon(true);
+            
+            return thread;
+        });
+        
+        flusher.scheduleWithFixedDelay(TodoJournal::flushAll, COMMIT_INTERVAL, COMMIT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Stops the background thread after writing all pending changes. A
+     * journal created afterwards starts the thread again.
+     *
+     * @throws ConvirganceException if a journal could not be written
+     */
+    public static void shutdown()
+    {
+        ScheduledExecutorService executor;
+        
+        synchronized(TodoJournal.class)
+        {
+            executor = flusher;
+            flusher = null;
+        }
+        
+        if(executor != null)
+        {
+            executor.shutdown();
+            
+            try
+            {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        for(var journal : dirty)
+        {
+            dirty.remove(journal);
+            journal.flush();
+        }
+    }
+    
+    /**
+     * Maps a partition name to a file name. Safe names are used as is, and
+     * other names are hashed. The two kinds get different prefixes, and the
+     * default partition gets a name without a prefix, so no two partitions
+     * can share a file.
+     */
+    private static String toFileName(String name)
+    {
+        if(name == null || name.isEmpty()) return "default";
+        if(name.matches("[A-Za-z0-9_-]{1,64}")) return "l-" + name;
+        
+        try
+        {
+            return "h-" + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(name.getBytes(StandardCharsets.UTF_8)));
+        }
+        catch(NoSuchAlgorithmException e)
+        {
+            throw new ConvirganceException(e);
+        }
+    }
+    
+    private static void flushAll()
+    {
+        for(var journal : dirty)
+        {
+            dirty.remove(journal);
+            
+            try
+            {
+                journal.flush();
+            }
+            catch(ConvirganceException e)
+            {
+                // The failure is reported by check() and retried next interval
+                dirty.add(journal);
+            }
+        }
+    }
+    
+    /**
+     * Fails if the last attempt to write the journal failed. Called by the
+     * store before every change so that callers learn the change can't be
+     * persisted.
+     *
+     * @throws ConvirganceException with the last write error
+     */
+    void check()
+    {
+        var failure = this.failure;
+        
+        if(failure != null) throw new ConvirganceException("Unable to write the todo journal " + log, failure);
+    }
+    
+    private void append(Entry entry)
+    {
+        pending.add(entry);
+        dirty.add(this);
+    }
+    
+    void insert(long version, long id, String text, long time)
+    {
+        append(new Entry(INSERT, version, id, text, Status.TODO, time));
+    }
+    
+    void update(long version, long id, Status state, long time)
+    {
+        append(new Entry(UPDATE, version, id, null, state, time));
+    }
+    
+    void remove(long version, long id)
+    {
+        append(new Entry(REMOVE, version, id, null, null, 0));
+    }
+    
+    private ByteBuffer reserve(int size)
+    {
+        ByteBuffer larger;
+        
+        if(buffer.remaining() >= size) return buffer;
+        
+        larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+        
+        buffer.flip();
+        larger.put(buffer);
+        
+        return (buffer = larger);
+    }
+    
+    private void encode(Entry entry)
+    {
+        byte[] text = (entry.type == INSERT) ? Objects.toString(entry.text, "").getBytes(StandardCharsets.UTF_8) : null;
+        int length = 1 + 8 + 8 + ((entry.type == REMOVE) ? 0 : 8 + 1) + ((text == null) ? 0 : 8 + 4 + text.length);
+        int start;
+        var crc = new CRC32();
+        
+        reserve(4 + length + 4).putInt(length);
+        
+        start = buffer.position();
+        
+        buffer.put(entry.type);
+        buffer.putLong(entry.version);
+        buffer.putLong(entry.id);
+        
+        if(entry.type != REMOVE)
+        {
+            buffer.putLong(entry.time);
+            buffer.put((byte)entry.state.ordinal());
+        }
+        
+        if(text != null)
+        {
+            buffer.putLong(entry.time);
+            buffer.putInt(text.length);
+            buffer.put(text);
+        }
+        
+        crc.update(buffer.array(), start, length);
+        buffer.putInt((int)crc.getValue());
+    }
+    
+    /**
+     * Writes all pending changes to the log with a single force and compacts
+     * the log into a new snapshot once it outgrows the previous one. The
+     * encoded changes are kept until the force succeeds, so a failed flush
+     * loses nothing and the next flush writes them again.
+     *
+     * @throws ConvirganceException if the changes could not be written
+     */
+    public synchronized void flush()
+    {
+        Entry entry;
+        ByteBuffer data;
+        
+        // Entries encoded by a failed flush are still at the start of the buffer
+        while((entry = pending.poll()) != null)
+        {
+            // Already captured by the last snapshot
+            if(entry.version <= snapshotVersion) continue;
+            
+            encode(entry);
+        }
+        
+        if(buffer.position() < 1) return;
+        
+        try
+        {
+            if(channel == null) open();
+            
+            data = buffer.duplicate().flip();
+            
+            while(data.hasRemaining()) channel.write(data, committed + data.position());
+            
+            channel.force(false);
+            
+            committed += data.limit();
+            failure = null;
+            
+            buffer.clear();
+        }
+        catch(IOException e)
+        {
+            release();
+            
+            failure = new ConvirganceException(e);
+            
+            throw failure;
+        }
+        
+        try
+        {
+            if(committed > Math.max(COMPACT_SIZE, snapshotSize)) compact();
+        }
+        catch(IOException e)
+        {
+            // The log still holds every change, so compaction is retried later
+            release();
+            
+            throw new ConvirganceException(e);
+        }
+        finally
+        {
+            buffer.clear();
+        }
+    }
+    
+    private void open() throws IOException
+    {
+        channel = FileChannel.open(log, CREATE, WRITE);
+        
+        // Discard whatever a failed write left after the last forced entry
+        if(committed < 0) committed = channel.size();
+        else channel.truncate(committed);
+    }
+    
+    private void release()
+    {
+        try
+        {
+            if(channel != null) channel.close();
+        }
+        catch(IOException e)
+        {
+            // Already failing. The channel is reopened by the next flush.
+        }
+        
+        channel = null;
+    }
+    
+    /**
+     * Flushes pending changes and releases the log file. The journal reopens
+     * the file if further changes arrive.
+     */
+    public synchronized void close()
+    {
+        flush();
+        
+        try
+        {
+            if(channel != null) channel.close();
+        }
+        catch(IOException e)
+        {
+            throw new ConvirganceException(e);
+        }
+        
+        channel = null;
+    }
+    
+    private void compact() throws IOException
+    {
+        var current = store.snapshot();
+        var temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        var crc = new CRC32();
+        byte[] text;
+        
+        buffer.clear();
+        buffer.putInt(MAGIC);
+        buffer.putLong(current.getVersion());
+        buffer.putLong(current.getNext());
+        buffer.putInt(current.size());
+        
+        for(int i=0; i<current.size(); i++)
+        {
+            text = Objects.toString(current.getText(i), "").getBytes(StandardCharsets.UTF_8);
+            
+            reserve(8 + 8 + 8 + 1 + 4 + text.length + 4);
+            
+            buffer.putLong(current.getId(i));
+            buffer.putLong(current.getCreated(i));
+            buffer.putLong(current.getUpdated(i));
+            buffer.put((byte)current.getState(i).ordinal());
+            buffer.putInt(text.length);
+            buffer.put(text);
+        }
+        
+        crc.update(buffer.array(), 0, buffer.position());
+        reserve(4).putInt((int)crc.getValue());
+        buffer.flip();
+        
+        try(var out = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING))
+        {
+            while(buffer.hasRemaining()) out.write(buffer);
+            
+            out.force(true);
+        }
+        
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        
+        // Everything in the log up to this point is covered by the snapshot
+        channel.truncate(0);
+        channel.force(true);
+        
+        committed = 0;
+        snapshotVersion = current.getVersion();
+        snapshotSize = Files.size(snapshot);
+    }
+    
+    /**
+     * Loads the last snapshot and replays the log into the store. Called by
+     * TodoStore.open() before the store is handed out.
+     *
+     * @param store the store to recover into
+     */
+    synchronized void recover(TodoStore store)
+    {
+        this.store = store;
+        
+        try
+        {
+            if(Files.exists(snapshot)) readSnapshot(store);
+            if(Files.exists(log)) readLog(store);
+        }
+        catch(IOException e)
+        {
+            throw new ConvirganceException(e);
+        }
+    }
+    
+    private static MappedByteBuffer map(Path path) throws IOException
+    {
+        try(var channel = FileChannel.open(path, READ))
+        {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+    
+    private static String readText(ByteBuffer buffer)
+    {
+        var text = new byte[buffer.getInt()];
+        
+        buffer.get(text);
+        
+        return new String(text, StandardCharsets.UTF_8);
+    }
+    
+    private void readSnapshot(TodoStore store) throws IOException
+    {
+        var buffer = map(snapshot);
+        var crc = new CRC32();
+        long[] ids;
+        long[] created;
+        long[] updated;
+        byte[] states;
+        String[] texts;
+        long version;
+        long next;
+        int count;
+        
+        if(buffer.limit() < 28 || buffer.getInt() != MAGIC) throw new ConvirganceException("Invalid todo snapshot: " + snapshot);
+        
+        crc.update(buffer.duplicate().position(0).limit(buffer.limit() - 4));
+        
+        if((int)crc.getValue() != buffer.getInt(buffer.limit() - 4)) throw new ConvirganceException("Corrupt todo snapshot: " + snapshot);
+        
+        version = buffer.getLong();
+        next = buffer.getLong();
+        count = buffer.getInt();
+        ids = new long[count];
+        created = new long[count];
+        updated = new long[count];
+        states = new byte[count];
+        texts = new String[count];
+        
+        for(int i=0; i<count; i++)
+        {
+            ids[i] = buffer.getLong();
+            created[i] = buffer.getLong();
+            updated[i] = buffer.getLong();
+            states[i] = buffer.get();
+            texts[i] = readText(buffer);
+        }
+        
+        store.restore(new TodoStore.Snapshot(version, next, count, ids, created, updated, states, texts));
+        
+        this.snapshotVersion = version;
+        this.snapshotSize = buffer.limit();
+    }
+    
+    private void readLog(TodoStore store) throws IOException
+    {
+        var buffer = map(log);
+        var crc = new CRC32();
+        int length;
+        byte type;
+        long version;
+        long id;
+        long created;
+        long updated;
+        Status state;
+        String text;
+        
+        while(buffer.remaining() >= 4)
+        {
+            length = buffer.getInt(buffer.position());
+            
+            // Stop at a torn write at the end of the log
+            if(length <= 0 || buffer.remaining() < 4 + length + 4) break;
+            
+            crc.reset();
+            crc.update(buffer.duplicate().position(buffer.position() + 4).limit(buffer.position() + 4 + length));
+            
+            if((int)crc.getValue() != buffer.getInt(buffer.position() + 4 + length)) break;
+            
+            buffer.getInt();
+            
+            type = buffer.get();
+            version = buffer.getLong();
+            id = buffer.getLong();
+            
+            if(type == REMOVE)
+            {
+                if(version > snapshotVersion) store.replayRemove(version, id);
+            }
+            else if(type == UPDATE)
+            {
+                updated = buffer.getLong();
+                state = Status.values()[buffer.get()];
+                
+                if(version > snapshotVersion) store.replayUpdate(version, id, state, updated);
+            }
+            else
+            {
+                // Inserted records always start as TODO with updated == created
+                buffer.position(buffer.position() + 8 + 1);
+                
+                created = buffer.getLong();
+                text = readText(buffer);
+                
+                if(version > snapshotVersion) store.replayInsert(version, id, text, created);
+            }
+            
+            buffer.getInt();
+        }
+        
+        // Discard a torn tail so that new entries are not appended after it
+        if(buffer.position() < buffer.limit())
+        {
+            try(var channel = FileChannel.open(log, WRITE))
+            {
+                channel.truncate(buffer.position());
+            }
+        }
+    }
+    
+    private static class Entry
+    {
+        private final byte type;
+        private final long version;
+        private final long id;
+        private final String text;
+        private final Status state;
+        private final long time;
+        
+        public Entry(byte type, long version, long id, String text, Status state, long time)
+        {
+            this.type = type;
+            this.version = version;
+            this.id = id;
+            this.text = text;
+            this.state = state;
+            this.time = time;
+        }
+    }
+}
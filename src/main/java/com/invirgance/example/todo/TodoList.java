@@ -23,14 +23,15 @@
  */
 package com.invirgance.example.todo;
 
-import com.invirgance.convirgance.ConvirganceException;
 import com.invirgance.convirgance.json.JSONArray;
 import com.invirgance.convirgance.json.JSONObject;
-import com.invirgance.convirgance.transform.IdentityTransformer;
 import com.invirgance.convirgance.web.binding.Binding;
 import com.invirgance.convirgance.web.consumer.Consumer;
 import com.invirgance.convirgance.wiring.annotation.Wiring;
-import static com.invirgance.example.todo.TodoList.Status.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  *
@@ -41,132 +42,352 @@ public class TodoList implements Binding, Consumer
 {
     public static final int MAX_SIZE = 25;
     
-    private static final JSONArray<JSONObject> todos = new JSONArray<>();
-    private static long index = 1;
+    private static final TodoPartitions partitions = new TodoPartitions(MAX_SIZE);
+    private static final ThreadLocal<String> selected = new ThreadLocal<>();
     
-    private static void attemptDelete()
+    private String partition;
+    private String cursor;
+    private String limit;
+    private int maxLimit = 1000;
+
+    /**
+     * Name of the request parameter holding the session or tenant key that
+     * selects which todo list to use. When not set, all requests share the
+     * default list.
+     *
+     * @return the name of the partition parameter
+     */
+    public String getPartition()
+    {
+        return partition;
+    }
+    
+    public void setPartition(String partition)
+    {
+        this.partition = partition;
+    }
+    
+    /**
+     * Name of the request parameter holding the pagination cursor. When the
+     * parameter is present, only the tasks with ids greater than its value
+     * are returned. Pass the id of the last task of a page to get the next.
+     * Values that are not a non-negative number are rejected.
+     *
+     * @return the name of the cursor parameter
+     */
+    public String getCursor()
+    {
+        return cursor;
+    }
+    
+    public void setCursor(String cursor)
+    {
+        this.cursor = cursor;
+    }
+    
+    /**
+     * Name of the request parameter holding the page size. When the cursor
+     * is present without a page size, pages hold maxLimit tasks. Sizes are
+     * clamped between 1 and maxLimit.
+     *
+     * @return the name of the page size parameter
+     */
+    public String getLimit()
+    {
+        return limit;
+    }
+    
+    public void setLimit(String limit)
+    {
+        this.limit = limit;
+    }
+    
+    /**
+     * Largest page size a request may ask for
+     *
+     * @return the maximum page size
+     */
+    public int getMaxLimit()
+    {
+        return maxLimit;
+    }
+    
+    public void setMaxLimit(int maxLimit)
+    {
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Maximum number of tasks in each todo list. Defaults to MAX_SIZE. The
+     * list settings are shared by every service, so configuring a setting
+     * differently in two services fails.
+     *
+     * @return the capacity of each list
+     */
+    public int getCapacity()
+    {
+        return partitions.getCapacity();
+    }
+
+    public void setCapacity(int capacity)
+    {
+        partitions.setCapacity(capacity);
+    }
+
+    /**
+     * Policy that selects which task to drop when inserting into a full
+     * list. Defaults to StateEvictionPolicy.
+     *
+     * @return the eviction policy
+     */
+    public EvictionPolicy getEviction()
+    {
+        return partitions.getEviction();
+    }
+
+    public void setEviction(EvictionPolicy eviction)
+    {
+        partitions.setEviction(eviction);
+    }
+
+    /**
+     * Time in milliseconds after which an unused partition is discarded.
+     * Only applies when a directory is set, as discarded lists are reloaded
+     * from it. Lists kept in memory only are never discarded for being idle.
+     *
+     * @return the idle timeout in milliseconds
+     */
+    public long getIdleTimeout()
+    {
+        return partitions.getIdleTimeout();
+    }
+    
+    public void setIdleTimeout(long idleTimeout)
+    {
+        partitions.setIdleTimeout(idleTimeout);
+    }
+    
+    /**
+     * Maximum number of partitions kept in memory. The least recently used
+     * partitions are discarded once this number is exceeded. Without a
+     * directory, the tasks of a discarded partition are lost.
+     *
+     * @return the maximum number of partitions
+     */
+    public int getMaxPartitions()
+    {
+        return partitions.getMaxPartitions();
+    }
+    
+    public void setMaxPartitions(int maxPartitions)
+    {
+        partitions.setMaxPartitions(maxPartitions);
+    }
+    
+    /**
+     * Directory where the todo lists are persisted. When set, every change is
+     * appended to a journal in this directory and the lists are recovered
+     * from it on startup. When not set, the lists are kept in memory only.
+     * Must be set before any list is used.
+     *
+     * @return the persistence directory
+     */
+    public String getDirectory()
+    {
+        var directory = partitions.getDirectory();
+        
+        return (directory == null) ? null : directory.toString();
+    }
+
+    public void setDirectory(String directory)
+    {
+        partitions.setDirectory((directory == null) ? null : Path.of(directory));
+    }
+    
+    /**
+     * Selects the partition used by the static methods on the current
+     * thread. Every entry point (the binding, the consumer, and
+     * TodoListParameter) selects the partition for its request before
+     * touching the list, and TodoSelectionFilter clears the selection when
+     * the request completes. Work done for the request on another thread
+     * must select the partition again.
+     *
+     * @param key the session or tenant key. Null or empty selects the default
+     * partition.
+     */
+    public static void select(String key)
+    {
+        if(key == null || key.isBlank()) selected.remove();
+        else selected.set(key);
+    }
+    
+    /**
+     * The store for the partition selected on the current thread
+     *
+     * @return the currently selected store
+     */
+    public static TodoStore store()
+    {
+        return partitions.get(selected.get());
+    }
+    
+    /**
+     * The change feed for the partition selected on the current thread
+     *
+     * @return the currently selected change feed
+     */
+    public static TodoFeed feed()
+    {
+        return partitions.feed(selected.get());
+    }
+    
+    /**
+     * Closes every todo list, writing out any changes that have not been
+     * persisted yet. Called when the web application is undeployed.
+     */
+    public static void close()
+    {
+        partitions.close();
+    }
+    
+    void select(JSONObject parameters)
     {
-        JSONObject record;
-        int recent = -1;
-        long timestamp = -1;
+        if(partition == null) select((String)null);
+        else select(parameters.getString(partition));
+    }
+    
+    /**
+     * Applies a change to the selected store. If the partition was discarded
+     * between looking up the store and writing to it, the change is applied
+     * to the partition as reloaded instead.
+     */
+    private static <T> T change(Function<TodoStore,T> change)
+    {
+        TodoStore store;
         
-        for(int i=0; i<todos.size(); i++)
+        while(true)
         {
-            record = todos.get(i);
+            store = store();
             
-            if(record.getString("state").equals("CANCEL") && (recent < 0 || timestamp > record.getLong("updated")))
+            try
             {
-                recent = i;
-                timestamp = record.getLong("updated");
+                return change.apply(store);
             }
-        }
-        
-        if(recent >= 0)
-        {
-            todos.remove(recent);
-            return;
-        }
-        
-        for(int i=0; i<todos.size(); i++)
-        {
-            record = todos.get(i);
-            
-            if(record.getString("state").equals("DONE") && (recent < 0 || timestamp > record.getLong("updated")))
+            catch(IllegalStateException e)
             {
-                recent = i;
-                timestamp = record.getLong("updated");
+                if(!store.isClosed()) throw e;
             }
         }
-
-        if(recent >= 0)
-        {
-            todos.remove(recent);
-        }
     }
     
     public static long insert(String text)
     {
-        var todo = new JSONObject();
-        long time = System.currentTimeMillis();
-        var id = 0L;
-        
-        synchronized(todos)
-        {
-            if(todos.size() >= MAX_SIZE) attemptDelete();
-            if(todos.size() >= MAX_SIZE) return -1;
-            
-            id = index++;
-            
-            todo.put("id", id);
-            todo.put("text", text);
-            todo.put("state", TODO.toString());
-            todo.put("created", time);
-            todo.put("updated", time);
-            
-            todos.add(todo);
-        }
-        
-        return id;
+        return change(store -> store.insert(text, System.currentTimeMillis()));
     }
     
-    public static Iterable<JSONObject> list()
+    public static long[] insert(List<String> texts)
     {
-        return new IdentityTransformer() {
-            @Override
-            public JSONObject transform(JSONObject record) throws ConvirganceException
-            {
-                return new JSONObject(record);
-            }
-        }.transform(todos);
+        return change(store -> store.insert(texts, System.currentTimeMillis()));
+    }
+
+    public static TodoStore.Snapshot list()
+    {
+        return store().snapshot();
+    }
+    
+    public static Iterable<JSONObject> list(Status state)
+    {
+        return store().list(state);
+    }
+    
+    public static int count()
+    {
+        return store().count();
     }
     
+    public static int count(Status state)
+    {
+        return store().count(state);
+    }
+    
+    public static TodoStore.Stats stats()
+    {
+        return store().stats();
+    }
+
     public static JSONObject get(long id)
     {
-        for(var todo : todos)
-        {
-            if(todo.getLong("id") == id) 
-            {
-                return new JSONObject(todo);
-            }
-        }
-        
-        return null;
+        return store().get(id);
     }
     
     public static JSONObject update(long id, Status state)
     {
-        for(var todo : todos)
-        {
-            if(todo.getLong("id") == id) 
-            {
-                todo.put("state", state.toString());
-                todo.put("updated", System.currentTimeMillis());
-                
-                return new JSONObject(todo);
-            }
-        }
-        
-        return null;
+        return change(store -> store.update(id, state, System.currentTimeMillis()));
+    }
+    
+    public static JSONArray<JSONObject> update(long[] ids, Status state)
+    {
+        return change(store -> store.update(ids, state, System.currentTimeMillis()));
     }
     
+    public static JSONArray<JSONObject> search(String query, int limit)
+    {
+        return store().search(query, limit);
+    }
+    
+    public static JSONArray<JSONObject> related(long id, int limit)
+    {
+        return store().related(id, limit);
+    }
+
     @Override
     public Iterable<JSONObject> getBinding(JSONObject parameters)
     {
-        return TodoList.list();
+        var after = (cursor == null) ? null : parameters.getString(cursor);
+        var size = (limit == null) ? null : parameters.getString(limit);
+        long start;
+        long count;
+        
+        select(parameters);
+        
+        if(isBlank(after) && isBlank(size)) return TodoList.list();
+        
+        start = isBlank(after) ? 0 : parseNumber(cursor, after);
+        count = isBlank(size) ? maxLimit : parseNumber(limit, size);
+        
+        if(start < 0) throw new IllegalArgumentException("Invalid value for " + cursor + ": " + after);
+        
+        return TodoList.list().page(start, (int)Math.max(1, Math.min(maxLimit, count)));
+    }
+    
+    private static long parseNumber(String name, String value)
+    {
+        try
+        {
+            return Long.parseLong(value.strip());
+        }
+        catch(NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value, e);
+        }
+    }
+    
+    private static boolean isBlank(String value)
+    {
+        return (value == null || value.isBlank());
     }
     
     @Override
     public JSONArray consume(Iterable<JSONObject> iterable, JSONObject parameters)
     {
         JSONArray keys = new JSONArray();
-        long key;
+        ArrayList<String> tasks = new ArrayList<>();
         
-        for(var record : iterable)
-        {
-            key = TodoList.insert(record.getString("task"));
-            
-            keys.add(key);
-        }
+        select(parameters);
+        
+        for(var record : iterable) tasks.add(record.getString("task"));
+        
+        for(long key : TodoList.insert(tasks)) keys.add(key);
         
         return keys;
     }
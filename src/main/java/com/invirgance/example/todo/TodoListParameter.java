@@ -35,7 +35,11 @@ import com.invirgance.convirgance.wiring.annotation.Wiring;
 public class TodoListParameter implements Parameter
 {
     private String name;
-    
+    private String partition;
+    private boolean extended;
+    private String format = "table";
+    private int tokenBudget = 1000;
+
     @Override
     public String getName()
     {
@@ -47,9 +51,79 @@ public class TodoListParameter implements Parameter
         this.name = name;
     }
 
+    /**
+     * Name of the request parameter holding the session or tenant key. Must
+     * match the partition configured on the TodoList binding.
+     *
+     * @return the name of the partition parameter
+     */
+    public String getPartition()
+    {
+        return partition;
+    }
+    
+    public void setPartition(String partition)
+    {
+        this.partition = partition;
+    }
+    
+    /**
+     * Include the created and updated times in the table. The rendered table
+     * is cached until the list changes, or for up to a minute when extended.
+     *
+     * @return true if the created and updated columns are included
+     */
+    public boolean isExtended()
+    {
+        return extended;
+    }
+    
+    public void setExtended(boolean extended)
+    {
+        this.extended = extended;
+    }
+    
+    /**
+     * How the list is encoded. "table" renders every task as a markdown
+     * table. "compact" renders only open tasks in a terse form limited to
+     * the token budget, so the prompt stays small as the list grows.
+     *
+     * @return the encoding format
+     */
+    public String getFormat()
+    {
+        return format;
+    }
+    
+    public void setFormat(String format)
+    {
+        if(!format.equals("table") && !format.equals("compact")) throw new IllegalArgumentException("Unknown format: " + format);
+        
+        this.format = format;
+    }
+    
+    /**
+     * Approximate number of tokens the compact format may use
+     *
+     * @return the token budget
+     */
+    public int getTokenBudget()
+    {
+        return tokenBudget;
+    }
+    
+    public void setTokenBudget(int tokenBudget)
+    {
+        this.tokenBudget = tokenBudget;
+    }
+    
     @Override
     public Object getValue(HttpRequest request)
     {
-        return TodoTools.table(TodoList.list(), false);
+        TodoList.select((partition == null) ? null : request.getParameter(partition));
+        
+        if(format.equals("compact")) return TodoTools.compact(TodoList.list(), tokenBudget);
+        
+        return TodoTools.table(TodoList.list(), extended);
     }
 }
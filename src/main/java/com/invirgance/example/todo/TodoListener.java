@@ -0,0 +1,65 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.todo;
+
+import com.invirgance.example.todo.TodoList.Status;
+
+/**
+ * Receives the changes made to a TodoStore. Listeners are called while the
+ * store holds its write lock, in version order, so they must return quickly
+ * and must not call back into the store. Changes replayed while recovering
+ * from a journal are not reported.
+ *
+ * @author jbanes
+ */
+public interface TodoListener
+{
+    /**
+     * A record was inserted
+     *
+     * @param version the store version after the insert
+     * @param id the id of the new record
+     * @param text the text of the record
+     * @param time the creation time of the record
+     */
+    public void inserted(long version, long id, String text, long time);
+    
+    /**
+     * The state of a record was changed
+     *
+     * @param version the store version after the update
+     * @param id the id of the record
+     * @param state the new state of the record
+     * @param time the time of the update
+     */
+    public void updated(long version, long id, Status state, long time);
+    
+    /**
+     * A record was evicted from the store
+     *
+     * @param version the store version after the removal
+     * @param id the id of the removed record
+     */
+    public void removed(long version, long id);
+}
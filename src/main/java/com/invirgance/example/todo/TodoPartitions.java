@@ -0,0 +1,338 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.todo;
+
+import com.invirgance.convirgance.ConvirganceException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of independent todo lists keyed by session or tenant. Each
+ * partition is a separate TodoStore with its own lock, so writes to different
+ * partitions never contend. Partitions that have not been accessed within the
+ * idle timeout are dropped unless a client is subscribed to their change
+ * feed, and the number of partitions is capped so memory stays bounded
+ * regardless of how many sessions come and go. Partitions with subscribers
+ * are never dropped.
+ * <br><br>
+ * When a directory is configured, each partition is backed by a TodoJournal
+ * in that directory. Discarded partitions are flushed to disk and reloaded
+ * the next time they are used. Without a directory, dropping a partition
+ * loses its tasks. Such partitions are therefore exempt from the idle
+ * timeout, and only the least recently used are dropped once there are
+ * more than the maximum number of partitions.
+ * <br><br>
+ * A discarded partition's store is closed, so a caller that obtained it
+ * before it was discarded gets an IllegalStateException on writing and
+ * must obtain the store again.
+ * <br><br>
+ * The settings are shared by every service using the partitions. Once a
+ * setting has been configured, configuring it again with a different value
+ * fails rather than silently replacing the first value.
+ *
+ * @author jbanes
+ */
+public class TodoPartitions
+{
+    public static final String DEFAULT = "";
+    
+    private static final int FEED_BACKLOG = 1024;
+    private static final int FEED_QUEUE = 256;
+
+    private final ConcurrentHashMap<String,Partition> partitions = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+    private final Set<String> configured = ConcurrentHashMap.newKeySet();
+    
+    private volatile int capacity;
+    private volatile long idleTimeout = 30 * 60 * 1000;
+    private volatile int maxPartitions = 10000;
+    private volatile Path directory;
+    private volatile EvictionPolicy eviction = new StateEvictionPolicy();
+
+    public TodoPartitions(int capacity)
+    {
+        this.capacity = capacity;
+    }
+    
+    /**
+     * The maximum number of tasks in each partition
+     *
+     * @return the capacity of each partition
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    public synchronized void setCapacity(int capacity)
+    {
+        configure("capacity", this.capacity, capacity);
+        
+        this.capacity = capacity;
+        
+        for(var partition : partitions.values()) partition.store.setCapacity(capacity);
+    }
+    
+    public EvictionPolicy getEviction()
+    {
+        return eviction;
+    }
+    
+    public synchronized void setEviction(EvictionPolicy eviction)
+    {
+        configure("eviction", this.eviction, eviction);
+        
+        this.eviction = eviction;
+        
+        for(var partition : partitions.values()) partition.store.setEviction(eviction);
+    }
+    
+    /**
+     * Time in milliseconds after which an unused partition is discarded. The
+     * default partition is never discarded, and neither are partitions that
+     * are only held in memory.
+     *
+     * @return the idle timeout in milliseconds
+     */
+    public long getIdleTimeout()
+    {
+        return idleTimeout;
+    }
+    
+    public synchronized void setIdleTimeout(long idleTimeout)
+    {
+        configure("idleTimeout", this.idleTimeout, idleTimeout);
+        
+        this.idleTimeout = idleTimeout;
+    }
+    
+    public int getMaxPartitions()
+    {
+        return maxPartitions;
+    }
+    
+    public synchronized void setMaxPartitions(int maxPartitions)
+    {
+        configure("maxPartitions", this.maxPartitions, maxPartitions);
+        
+        this.maxPartitions = maxPartitions;
+    }
+    
+    /**
+     * Directory used to persist the partitions. Null keeps the partitions in
+     * memory only.
+     *
+     * @return the persistence directory
+     */
+    public Path getDirectory()
+    {
+        return directory;
+    }
+    
+    /**
+     * Sets the persistence directory. The directory must be set before any
+     * partition is used, as partitions already in memory have no journal and
+     * may have subscribers that must not be dropped.
+     *
+     * @param directory the persistence directory or null to disable persistence
+     */
+    public synchronized void setDirectory(Path directory)
+    {
+        if(Objects.equals(directory, this.directory))
+        {
+            configured.add("directory");
+            return;
+        }
+        
+        if(!partitions.isEmpty()) throw new ConvirganceException("The todo list directory must be set before the lists are used");
+        
+        configure("directory", this.directory, directory);
+        
+        this.directory = directory;
+    }
+    
+    private void configure(String property, Object current, Object value)
+    {
+        if(configured.add(property) || Objects.equals(current, value)) return;
+        
+        throw new ConvirganceException("Conflicting todo list " + property + ": " + current + " and " + value);
+    }
+    
+    public int size()
+    {
+        return partitions.size();
+    }
+    
+    /**
+     * Obtains the store for a partition, creating it if needed.
+     *
+     * @param key the session or tenant key. Null selects the default partition.
+     * @return the store for the partition
+     */
+    public TodoStore get(String key)
+    {
+        return partition(key).store;
+    }
+    
+    /**
+     * Obtains the change feed for a partition, creating the partition if
+     * needed. Partitions with subscribers are not discarded while idle.
+     *
+     * @param key the session or tenant key. Null selects the default partition.
+     * @return the change feed for the partition
+     */
+    public TodoFeed feed(String key)
+    {
+        return partition(key).feed;
+    }
+    
+    /**
+     * Discards every partition, closing their journals and change feeds.
+     * Partitions used afterwards are reloaded from the directory.
+     *
+     * @throws ConvirganceException if a journal could not be written. The
+     * remaining partitions are still closed.
+     */
+    public void close()
+    {
+        ConvirganceException failure = null;
+        
+        for(var key : partitions.keySet())
+        {
+            try
+            {
+                discard(key, partitions.get(key));
+            }
+            catch(ConvirganceException e)
+            {
+                if(failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        
+        if(failure != null) throw failure;
+    }
+    
+    private Partition partition(String key)
+    {
+        long now = System.currentTimeMillis();
+        Partition partition;
+        
+        if(key == null) key = DEFAULT;
+        
+        partition = partitions.get(key);
+        
+        if(partition == null) partition = partitions.computeIfAbsent(key, this::create);
+        
+        partition.accessed = now;
+        
+        if(now - lastSweep.get() > Math.min(idleTimeout, 60 * 1000) || partitions.size() > maxPartitions) sweep(now);
+        
+        return partition;
+    }
+    
+    private Partition create(String key)
+    {
+        var path = directory;
+        var journal = (path == null) ? null : new TodoJournal(path, key);
+        var store = TodoStore.open(capacity, journal);
+        var feed = new TodoFeed(store, FEED_BACKLOG, FEED_QUEUE);
+        
+        store.setEviction(eviction);
+        store.addListener(feed);
+        
+        return new Partition(store, journal, feed);
+    }
+    
+    private void discard(String key, Partition partition)
+    {
+        if(partition == null || !partitions.remove(key, partition)) return;
+        
+        partition.store.close();
+        
+        try
+        {
+            if(partition.journal != null) partition.journal.close();
+        }
+        finally
+        {
+            partition.feed.close();
+        }
+    }
+    
+    private void sweep(long now)
+    {
+        long last = lastSweep.get();
+        ArrayList<Map.Entry<String,Partition>> entries;
+        int excess;
+        
+        // Only one thread sweeps at a time
+        if(!lastSweep.compareAndSet(last, now)) return;
+        
+        for(var entry : partitions.entrySet())
+        {
+            if(entry.getKey().equals(DEFAULT) || entry.getValue().feed.hasSubscribers()) continue;
+            if(entry.getValue().journal == null) continue;
+            if(now - entry.getValue().accessed > idleTimeout) discard(entry.getKey(), entry.getValue());
+        }
+        
+        excess = partitions.size() - maxPartitions;
+        
+        if(excess <= 0) return;
+        
+        entries = new ArrayList<>(partitions.entrySet());
+        
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().accessed));
+        
+        for(var entry : entries)
+        {
+            if(excess <= 0) break;
+            if(entry.getKey().equals(DEFAULT) || entry.getValue().feed.hasSubscribers()) continue;
+            
+            discard(entry.getKey(), entry.getValue());
+            excess--;
+        }
+    }
+    
+    private static class Partition
+    {
+        private final TodoStore store;
+        private final TodoJournal journal;
+        private final TodoFeed feed;
+        private volatile long accessed;
+        
+        public Partition(TodoStore store, TodoJournal journal, TodoFeed feed)
+        {
+            this.store = store;
+            this.journal = journal;
+            this.feed = feed;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.todo;
+
+import com.invirgance.convirgance.json.JSONArray;
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.web.binding.Binding;
+import com.invirgance.convirgance.wiring.annotation.Wiring;
+
+/**
+ * Binding that returns the aggregates maintained by the todo list as a
+ * single record. Nothing is scanned to produce the result.
+ *
+ * @author jbanes
+ */
+@Wiring
+public class TodoStats implements Binding
+{
+    private TodoList list = new TodoList();
+    
+    /**
+     * Name of the request parameter holding the session or tenant key. Must
+     * match the partition configured on the TodoList binding.
+     *
+     * @return the name of the partition parameter
+     */
+    public String getPartition()
+    {
+        return list.getPartition();
+    }
+    
+    public void setPartition(String partition)
+    {
+        list.setPartition(partition);
+    }
+    
+    @Override
+    public Iterable<JSONObject> getBinding(JSONObject parameters)
+    {
+        list.select(parameters);
+        
+        return new JSONArray<>(TodoList.stats().toJSON());
+    }
+}
@@ -0,0 +1,1347 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.todo;
+
+import com.invirgance.convirgance.json.JSONArray;
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.example.todo.TodoList.Status;
+import static com.invirgance.example.todo.TodoList.Status.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * Indexed, column-oriented storage for todo records. Ids, timestamps, states
+ * and text are held in parallel primitive arrays ("slots") that are appended
+ * in id order, so a record is found by binary search on the id column.
+ * Each state keeps an intrusive linked list of its slots in update order,
+ * and a second list orders all slots by update time. Lookups, state queries
+ * and eviction do not need to scan the list. JSONObjects are only created
+ * when records are handed out. A TodoIndex over the text is maintained as
+ * records come and go, so searches only touch matching records.
+ *
+ * Writers serialize on a single lock and every change bumps the store
+ * version. Point lookups use optimistic reads. Iteration works from an
+ * immutable, versioned snapshot of the columns that is rebuilt on demand, so
+ * readers never observe a partial update.
+ *
+ * @author jbanes
+ */
+public class TodoStore
+{
+    private static final Status[] STATES = Status.values();
+    private static final int MAX_CACHED = 64;
+    private static final byte FREE = -1;
+    private static final int NIL = -1;
+    private static final AtomicLong instances = new AtomicLong();
+
+    private long[] ids;
+    private long[] created;
+    private long[] updated;
+    private byte[] states;
+    private String[] texts;
+    
+    // Per-state list in update order
+    private int[] previous;
+    private int[] next;
+    
+    // List of all slots in update order
+    private int[] older;
+    private int[] newer;
+    
+    private final int[] heads = new int[STATES.length];
+    private final int[] tails = new int[STATES.length];
+    private final int[] counts = new int[STATES.length];
+    private int oldest = NIL;
+    private int newest = NIL;
+    
+    // Slots holding a task that is not done
+    private final SlotBitmap open = new SlotBitmap(0);
+
+    private int slots;
+    private int live;
+    
+    private final StampedLock lock = new StampedLock();
+    
+    private final TodoJournal journal;
+    private final View view = new View();
+    private final TodoIndex textIndex = new TodoIndex();
+    private final CopyOnWriteArrayList<TodoListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile int capacity;
+    private volatile EvictionPolicy eviction = new StateEvictionPolicy();
+    private long index = 1;
+    
+    private volatile long version;
+    private volatile boolean closed;
+    private final long instance = instances.incrementAndGet();
+    private volatile Snapshot snapshot = new Snapshot(0, 1, 0, new long[0], new long[0], new long[0], new byte[0], new String[0]);
+    
+    public TodoStore(int capacity)
+    {
+        this(capacity, null);
+    }
+    
+    private TodoStore(int capacity, TodoJournal journal)
+    {
+        this.capacity = capacity;
+        this.journal = journal;
+        
+        allocate(Math.max(1, Math.min(capacity, 16)));
+        
+        Arrays.fill(heads, NIL);
+        Arrays.fill(tails, NIL);
+    }
+    
+    /**
+     * Creates a store backed by a journal. The contents of the journal are
+     * recovered into the store before it is returned, and every change made
+     * afterwards is appended to the journal. Changes fail while the journal
+     * can't be written.
+     *
+     * @param capacity maximum number of records held by the store
+     * @param journal the journal to recover from and log to. May be null.
+     * @return the recovered store
+     */
+    public static TodoStore open(int capacity, TodoJournal journal)
+    {
+        var store = new TodoStore(capacity, journal);
+        
+        if(journal != null) journal.recover(store);
+        
+        return store;
+    }
+    
+    public int getCapacity()
+    {
+        return capacity;
+    }
+    
+    /**
+     * Changes the maximum number of records. Lowering the capacity does not
+     * remove records. Records are only evicted as new ones are inserted.
+     *
+     * @param capacity the maximum number of records
+     */
+    public void setCapacity(int capacity)
+    {
+        this.capacity = capacity;
+    }
+    
+    public EvictionPolicy getEviction()
+    {
+        return eviction;
+    }
+    
+    /**
+     * Sets the policy used to select a record to make room for a new record
+     * once the store is at capacity.
+     *
+     * @param eviction the eviction policy
+     */
+    public void setEviction(EvictionPolicy eviction)
+    {
+        this.eviction = eviction;
+    }
+
+    public int size()
+    {
+        return live;
+    }
+    
+    /**
+     * Modification counter for the store. The value changes every time a
+     * record is inserted, updated, or evicted.
+     *
+     * @return the current version of the store
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+    
+    public void addListener(TodoListener listener)
+    {
+        listeners.add(listener);
+    }
+    
+    public void removeListener(TodoListener listener)
+    {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Number identifying this store among the stores created by the process.
+     * Together with the version, it identifies the content of the store even
+     * when a discarded partition is recreated with a lower version.
+     *
+     * @return the instance number of the store
+     */
+    public long getInstance()
+    {
+        return instance;
+    }
+    
+    private void allocate(int length)
+    {
+        ids = (ids == null) ? new long[length] : Arrays.copyOf(ids, length);
+        created = (created == null) ? new long[length] : Arrays.copyOf(created, length);
+        updated = (updated == null) ? new long[length] : Arrays.copyOf(updated, length);
+        states = (states == null) ? new byte[length] : Arrays.copyOf(states, length);
+        texts = (texts == null) ? new String[length] : Arrays.copyOf(texts, length);
+        previous = (previous == null) ? new int[length] : Arrays.copyOf(previous, length);
+        next = (next == null) ? new int[length] : Arrays.copyOf(next, length);
+        older = (older == null) ? new int[length] : Arrays.copyOf(older, length);
+        newer = (newer == null) ? new int[length] : Arrays.copyOf(newer, length);
+        
+        open.resize(length);
+    }
+    
+    private int slot(long id)
+    {
+        int slot = Arrays.binarySearch(ids, 0, slots, id);
+        
+        if(slot < 0 || states[slot] == FREE) return NIL;
+        
+        return slot;
+    }
+    
+    private void link(int slot)
+    {
+        int state = states[slot];
+        
+        previous[slot] = tails[state];
+        next[slot] = NIL;
+        
+        if(tails[state] == NIL) heads[state] = slot;
+        else next[tails[state]] = slot;
+        
+        tails[state] = slot;
+        counts[state]++;
+        
+        older[slot] = newest;
+        newer[slot] = NIL;
+        
+        if(newest == NIL) oldest = slot;
+        else newer[newest] = slot;
+        
+        newest = slot;
+    }
+    
+    private void unlink(int slot)
+    {
+        int state = states[slot];
+        
+        if(previous[slot] == NIL) heads[state] = next[slot];
+        else next[previous[slot]] = next[slot];
+        
+        if(next[slot] == NIL) tails[state] = previous[slot];
+        else previous[next[slot]] = previous[slot];
+        
+        counts[state]--;
+        
+        if(older[slot] == NIL) oldest = newer[slot];
+        else newer[older[slot]] = newer[slot];
+        
+        if(newer[slot] == NIL) newest = older[slot];
+        else older[newer[slot]] = older[slot];
+    }
+    
+    /**
+     * Slides live slots down over freed ones and rewrites the links to match.
+     */
+    private void compact()
+    {
+        var remap = new int[slots];
+        int target = 0;
+        
+        for(int i=0; i<slots; i++)
+        {
+            if(states[i] == FREE)
+            {
+                remap[i] = NIL;
+                continue;
+            }
+            
+            remap[i] = target;
+            ids[target] = ids[i];
+            created[target] = created[i];
+            updated[target] = updated[i];
+            states[target] = states[i];
+            texts[target] = texts[i];
+            previous[target] = previous[i];
+            next[target] = next[i];
+            older[target] = older[i];
+            newer[target] = newer[i];
+            
+            target++;
+        }
+        
+        Arrays.fill(texts, target, slots, null);
+        
+        for(int i=0; i<target; i++)
+        {
+            if(previous[i] != NIL) previous[i] = remap[previous[i]];
+            if(next[i] != NIL) next[i] = remap[next[i]];
+            if(older[i] != NIL) older[i] = remap[older[i]];
+            if(newer[i] != NIL) newer[i] = remap[newer[i]];
+        }
+        
+        for(int i=0; i<heads.length; i++)
+        {
+            if(heads[i] != NIL) heads[i] = remap[heads[i]];
+            if(tails[i] != NIL) tails[i] = remap[tails[i]];
+        }
+        
+        if(oldest != NIL) oldest = remap[oldest];
+        if(newest != NIL) newest = remap[newest];
+
+        slots = target;
+        
+        open.clear();
+        
+        for(int i=0; i<slots; i++)
+        {
+            if(isOpen(i)) open.add(i);
+        }
+    }
+    
+    private boolean isOpen(int slot)
+    {
+        return (states[slot] != FREE && !STATES[states[slot]].isDone());
+    }
+    
+    private int append(long id, String text, Status state, long created, long updated)
+    {
+        int slot;
+        
+        if(slots >= ids.length)
+        {
+            if(slots - live >= slots / 2) compact();
+            else allocate(ids.length * 2);
+        }
+        
+        slot = slots++;
+        
+        this.ids[slot] = id;
+        this.texts[slot] = (text == null) ? null : text.intern();
+        this.states[slot] = (byte)state.ordinal();
+        this.created[slot] = created;
+        this.updated[slot] = updated;
+        
+        link(slot);
+        textIndex.add(id, text);
+        live++;
+        
+        if(isOpen(slot)) open.add(slot);
+        
+        return slot;
+    }
+    
+    private void change(int slot, Status state, long time)
+    {
+        unlink(slot);
+        
+        states[slot] = (byte)state.ordinal();
+        updated[slot] = time;
+        
+        link(slot);
+        
+        if(isOpen(slot)) open.add(slot);
+        else open.remove(slot);
+    }
+    
+    private void free(int slot)
+    {
+        unlink(slot);
+        textIndex.remove(ids[slot], texts[slot]);
+        
+        states[slot] = FREE;
+        texts[slot] = null;
+        live--;
+        
+        open.remove(slot);
+    }
+    
+    private void remove(int slot)
+    {
+        long id = ids[slot];
+        
+        free(slot);
+        version++;
+        
+        if(journal != null) journal.remove(version, id);
+        
+        for(var listener : listeners) listener.removed(version, id);
+    }
+    
+    private void attemptDelete(long time)
+    {
+        long id = eviction.select(view, time);
+        int slot = (id < 0) ? NIL : slot(id);
+        
+        if(slot != NIL) remove(slot);
+    }
+    
+    private JSONObject toJSON(int slot)
+    {
+        var todo = new JSONObject();
+        
+        todo.put("id", ids[slot]);
+        todo.put("text", texts[slot]);
+        todo.put("state", STATES[states[slot]].toString());
+        todo.put("created", created[slot]);
+        todo.put("updated", updated[slot]);
+        
+        return todo;
+    }
+    
+    private long add(String text, long time)
+    {
+        long id;
+        
+        if(live >= capacity) attemptDelete(time);
+        if(live >= capacity) return -1;
+        
+        id = index++;
+        
+        append(id, text, TODO, time, time);
+        version++;
+        
+        if(journal != null) journal.insert(version, id, text, time);
+        
+        for(var listener : listeners) listener.inserted(version, id, text, time);
+        
+        return id;
+    }
+    
+    private int change(long id, Status state, long time)
+    {
+        int slot = slot(id);
+        
+        if(slot == NIL) return NIL;
+        
+        change(slot, state, time);
+        version++;
+        
+        if(journal != null) journal.update(version, id, state, time);
+        
+        for(var listener : listeners) listener.updated(version, id, state, time);
+        
+        return slot;
+    }
+    
+    private void checkOpen()
+    {
+        if(closed) throw new IllegalStateException("The todo list has been closed");
+    }
+    
+    /**
+     * Stops the store from accepting changes. Called when the store's
+     * partition is discarded, so a caller still holding the store can't
+     * write to a journal that has been closed. Reads are still answered.
+     */
+    public void close()
+    {
+        long stamp = lock.writeLock();
+        
+        try
+        {
+            closed = true;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    public boolean isClosed()
+    {
+        return closed;
+    }
+    
+    public long insert(String text, long time)
+    {
+        long stamp;
+        
+        if(journal != null) journal.check();
+        
+        stamp = lock.writeLock();
+        
+        try
+        {
+            checkOpen();
+            
+            return add(text, time);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Inserts a batch of records while holding the lock once. Each record is
+     * handled exactly as if it were inserted on its own.
+     *
+     * @param texts the text of each record
+     * @param time the creation time of the records
+     * @return the id of each record in order, or -1 where the store was full
+     */
+    public long[] insert(List<String> texts, long time)
+    {
+        var ids = new long[texts.size()];
+        long stamp;
+        
+        if(journal != null) journal.check();
+        
+        stamp = lock.writeLock();
+        
+        try
+        {
+            checkOpen();
+            
+            for(int i=0; i<ids.length; i++) ids[i] = add(texts.get(i), time);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+        
+        return ids;
+    }
+
+    /**
+     * Looks up a record. The read is attempted optimistically and only falls
+     * back to taking the lock if a writer interfered.
+     *
+     * @param id the id of the record
+     * @return a new JSONObject for the record or null if no record has that id
+     */
+    public JSONObject get(long id)
+    {
+        long stamp = lock.tryOptimisticRead();
+        JSONObject todo = null;
+        int slot;
+        
+        try
+        {
+            slot = slot(id);
+            
+            if(slot != NIL) todo = toJSON(slot);
+        }
+        catch(RuntimeException e)
+        {
+            // Columns were resized or compacted mid-read
+            stamp = 0;
+        }
+        
+        if(lock.validate(stamp)) return todo;
+        
+        stamp = lock.readLock();
+        
+        try
+        {
+            slot = slot(id);
+            
+            return (slot == NIL) ? null : toJSON(slot);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    public JSONObject update(long id, Status state, long time)
+    {
+        long stamp;
+        int slot;
+        
+        if(journal != null) journal.check();
+        
+        stamp = lock.writeLock();
+        
+        try
+        {
+            checkOpen();
+            
+            slot = change(id, state, time);
+            
+            return (slot == NIL) ? null : toJSON(slot);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Changes the state of a batch of records while holding the lock once
+     *
+     * @param ids the ids of the records to update
+     * @param state the new state of the records
+     * @param time the update time
+     * @return the updated records in the order of the ids. Ids that were not
+     * found are skipped.
+     */
+    public JSONArray<JSONObject> update(long[] ids, Status state, long time)
+    {
+        var results = new JSONArray<JSONObject>();
+        long stamp;
+        int slot;
+        
+        if(journal != null) journal.check();
+        
+        stamp = lock.writeLock();
+        
+        try
+        {
+            checkOpen();
+            
+            for(long id : ids)
+            {
+                slot = change(id, state, time);
+                
+                if(slot != NIL) results.add(toJSON(slot));
+            }
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+        
+        return results;
+    }
+
+    /**
+     * Immutable copy of the records in insertion order as of the current
+     * version. Snapshots are shared between readers and are only rebuilt
+     * after the store has changed.
+     *
+     * @return a consistent snapshot of the stored records
+     */
+    public Snapshot snapshot()
+    {
+        var current = snapshot;
+        long stamp;
+        int count = 0;
+        
+        if(current.version == version) return current;
+        
+        stamp = lock.readLock();
+        
+        try
+        {
+            current = snapshot;
+            
+            if(current.version == version) return current;
+            
+            var ids = new long[live];
+            var created = new long[live];
+            var updated = new long[live];
+            var states = new byte[live];
+            var texts = new String[live];
+            
+            for(int i=0; i<slots; i++)
+            {
+                if(this.states[i] == FREE) continue;
+                
+                ids[count] = this.ids[i];
+                created[count] = this.created[i];
+                updated[count] = this.updated[i];
+                states[count] = this.states[i];
+                texts[count] = this.texts[i];
+                
+                count++;
+            }
+            
+            current = new Snapshot(version, index, count, ids, created, updated, states, texts);
+            snapshot = current;
+            
+            return current;
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Finds the records whose text contains every word of the query. Words of
+     * three or more characters also match part of a longer word, so "deploy"
+     * finds "redeployment".
+     *
+     * @param query the words to search for
+     * @param limit the maximum number of records to return
+     * @return new JSONObjects for the matching records in id order
+     */
+    public JSONArray<JSONObject> search(String query, int limit)
+    {
+        var words = TodoIndex.tokenize(query);
+        var results = new JSONArray<JSONObject>();
+        long[] candidates = null;
+        long stamp;
+        
+        if(words.isEmpty()) return results;
+        
+        stamp = lock.readLock();
+        
+        try
+        {
+            for(var word : words)
+            {
+                var matches = textIndex.candidates(word);
+                
+                candidates = (candidates == null) ? matches : intersect(candidates, matches);
+                
+                if(candidates.length < 1) break;
+            }
+            
+            for(long id : candidates)
+            {
+                int slot = slot(id);
+                
+                if(results.size() >= limit) break;
+                if(slot == NIL || !contains(texts[slot], words)) continue;
+                
+                results.add(toJSON(slot));
+            }
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Finds the records that share the most words with a record. Words that
+     * appear in many records count for less than rare ones.
+     *
+     * @param id the id of the record to compare against
+     * @param limit the maximum number of records to return
+     * @return new JSONObjects for the related records, most related first
+     */
+    public JSONArray<JSONObject> related(long id, int limit)
+    {
+        var scores = new HashMap<Long,Double>();
+        var results = new JSONArray<JSONObject>();
+        long stamp = lock.readLock();
+        int slot;
+        
+        try
+        {
+            slot = slot(id);
+            
+            if(slot == NIL) return results;
+            
+            for(var word : TodoIndex.tokenize(texts[slot]))
+            {
+                double weight = Math.log(1 + (double)textIndex.size() / textIndex.frequency(word));
+                
+                for(long match : textIndex.word(word))
+                {
+                    if(match != id) scores.merge(match, weight, Double::sum);
+                }
+            }
+            
+            var ranked = new ArrayList<>(scores.entrySet());
+            
+            ranked.sort((left, right) -> {
+                int order = Double.compare(right.getValue(), left.getValue());
+                
+                return (order != 0) ? order : Long.compare(left.getKey(), right.getKey());
+            });
+            
+            for(var entry : ranked)
+            {
+                if(results.size() >= limit) break;
+                
+                results.add(toJSON(slot(entry.getKey())));
+            }
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+        
+        return results;
+    }
+    
+    private static boolean contains(String text, Set<String> words)
+    {
+        var lower = text.toLowerCase();
+        
+        for(var word : words)
+        {
+            if(!lower.contains(word)) return false;
+        }
+        
+        return true;
+    }
+    
+    private static long[] intersect(long[] left, long[] right)
+    {
+        var results = new long[Math.min(left.length, right.length)];
+        int count = 0;
+        
+        for(int i=0, j=0; i<left.length && j<right.length; )
+        {
+            if(left[i] < right[j]) i++;
+            else if(left[i] > right[j]) j++;
+            else
+            {
+                results[count++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        
+        return Arrays.copyOf(results, count);
+    }
+    
+    /**
+     * Records in the given state ordered from least to most recently updated
+     *
+     * @param state the state to select
+     * @return new JSONObjects for the records currently in that state
+     */
+    public JSONArray<JSONObject> list(Status state)
+    {
+        var results = new JSONArray<JSONObject>();
+        long stamp = lock.readLock();
+        
+        try
+        {
+            for(int slot=heads[state.ordinal()]; slot != NIL; slot=next[slot])
+            {
+                results.add(toJSON(slot));
+            }
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+        
+        return results;
+    }
+    
+    public int count(Status state)
+    {
+        long stamp = lock.tryOptimisticRead();
+        int count = counts[state.ordinal()];
+        
+        if(lock.validate(stamp)) return count;
+        
+        stamp = lock.readLock();
+        
+        try
+        {
+            return counts[state.ordinal()];
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Number of records currently held. Unlike {@link #size()}, the value is
+     * read consistently with concurrent writers.
+     *
+     * @return the number of records
+     */
+    public int count()
+    {
+        long stamp = lock.tryOptimisticRead();
+        int count = live;
+        
+        if(lock.validate(stamp)) return count;
+        
+        stamp = lock.readLock();
+        
+        try
+        {
+            return live;
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    private Stats readStats()
+    {
+        int first = open.first();
+        
+        return new Stats(
+            version,
+            live,
+            capacity,
+            counts.clone(),
+            (first < 0) ? -1 : ids[first],
+            (first < 0) ? 0 : created[first],
+            (newest == NIL) ? 0 : updated[newest]
+        );
+    }
+    
+    /**
+     * Aggregates maintained as records are inserted, updated and evicted
+     *
+     * @return the current aggregates
+     */
+    public Stats stats()
+    {
+        long stamp = lock.tryOptimisticRead();
+        Stats stats = null;
+        
+        try
+        {
+            stats = readStats();
+        }
+        catch(RuntimeException e)
+        {
+            stamp = 0;
+        }
+        
+        if(lock.validate(stamp)) return stats;
+        
+        stamp = lock.readLock();
+        
+        try
+        {
+            return readStats();
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    void restore(Snapshot snapshot)
+    {
+        var order = new Integer[snapshot.size()];
+        
+        for(int i=0; i<order.length; i++) order[i] = i;
+        
+        // Relink in update order so that eviction order survives a restart
+        Arrays.sort(order, (left, right) -> Long.compare(snapshot.updated[left], snapshot.updated[right]));
+        
+        allocate(Math.max(ids.length, order.length));
+        
+        for(int i=0; i<order.length; i++)
+        {
+            ids[i] = snapshot.ids[i];
+            created[i] = snapshot.created[i];
+            updated[i] = snapshot.updated[i];
+            states[i] = snapshot.states[i];
+            texts[i] = snapshot.texts[i];
+            
+            textIndex.add(ids[i], texts[i]);
+        }
+        
+        slots = order.length;
+        live = order.length;
+        
+        for(int slot : order) link(slot);
+        
+        open.clear();
+        
+        for(int slot=0; slot<slots; slot++)
+        {
+            if(isOpen(slot)) open.add(slot);
+        }
+
+        this.index = snapshot.next;
+        this.version = snapshot.version;
+    }
+    
+    void replayInsert(long version, long id, String text, long time)
+    {
+        append(id, text, TODO, time, time);
+        
+        this.index = Math.max(index, id + 1);
+        this.version = version;
+    }
+    
+    void replayUpdate(long version, long id, Status state, long time)
+    {
+        int slot = slot(id);
+        
+        if(slot != NIL) change(slot, state, time);
+        
+        this.version = version;
+    }
+    
+    void replayRemove(long version, long id)
+    {
+        int slot = slot(id);
+        
+        if(slot != NIL) free(slot);
+        
+        this.version = version;
+    }
+    
+    public static class Stats
+    {
+        private final long version;
+        private final int total;
+        private final int capacity;
+        private final int[] counts;
+        private final long oldestOpen;
+        private final long oldestOpenCreated;
+        private final long lastUpdated;
+        
+        private Stats(long version, int total, int capacity, int[] counts, long oldestOpen, long oldestOpenCreated, long lastUpdated)
+        {
+            this.version = version;
+            this.total = total;
+            this.capacity = capacity;
+            this.counts = counts;
+            this.oldestOpen = oldestOpen;
+            this.oldestOpenCreated = oldestOpenCreated;
+            this.lastUpdated = lastUpdated;
+        }
+        
+        public long getVersion()
+        {
+            return version;
+        }
+        
+        public int getTotal()
+        {
+            return total;
+        }
+        
+        public int getCapacity()
+        {
+            return capacity;
+        }
+        
+        public int getCount(Status state)
+        {
+            return counts[state.ordinal()];
+        }
+        
+        /**
+         * Number of tasks that are not DONE or CANCEL
+         *
+         * @return the number of open tasks
+         */
+        public int getOpen()
+        {
+            int open = 0;
+            
+            for(var state : STATES)
+            {
+                if(!state.isDone()) open += counts[state.ordinal()];
+            }
+            
+            return open;
+        }
+        
+        /**
+         * The earliest created task that is not done
+         *
+         * @return the id of the task or -1 if there are no open tasks
+         */
+        public long getOldestOpen()
+        {
+            return oldestOpen;
+        }
+        
+        public long getOldestOpenCreated()
+        {
+            return oldestOpenCreated;
+        }
+        
+        /**
+         * Time of the most recent insert or update
+         *
+         * @return the last update time or 0 if the store is empty
+         */
+        public long getLastUpdated()
+        {
+            return lastUpdated;
+        }
+        
+        public JSONObject toJSON()
+        {
+            var stats = new JSONObject();
+            var states = new JSONObject();
+            
+            for(var state : STATES) states.put(state.toString(), counts[state.ordinal()]);
+            
+            stats.put("version", version);
+            stats.put("total", total);
+            stats.put("capacity", capacity);
+            stats.put("open", getOpen());
+            stats.put("states", states);
+            stats.put("oldestOpen", (oldestOpen < 0) ? null : oldestOpen);
+            stats.put("oldestOpenCreated", (oldestOpen < 0) ? null : oldestOpenCreated);
+            stats.put("lastUpdated", (total < 1) ? null : lastUpdated);
+            
+            return stats;
+        }
+    }
+    
+    /**
+     * Read-only access to the store's ordered indexes for eviction policies.
+     * Only valid while the store is selecting a record to evict.
+     */
+    public class View
+    {
+        private View()
+        {
+        }
+        
+        public int size()
+        {
+            return live;
+        }
+        
+        public int getCapacity()
+        {
+            return capacity;
+        }
+        
+        /**
+         * The least recently updated record in a state
+         *
+         * @param state the state to select from
+         * @return the id of the record or -1 if no records are in that state
+         */
+        public long oldest(Status state)
+        {
+            int slot = heads[state.ordinal()];
+            
+            return (slot == NIL) ? -1 : ids[slot];
+        }
+        
+        /**
+         * The least recently updated record in any state
+         *
+         * @return the id of the record or -1 if the store is empty
+         */
+        public long oldest()
+        {
+            return (oldest == NIL) ? -1 : ids[oldest];
+        }
+        
+        public Status getState(long id)
+        {
+            return STATES[states[slot(id)]];
+        }
+        
+        public long getCreated(long id)
+        {
+            return created[slot(id)];
+        }
+        
+        public long getUpdated(long id)
+        {
+            return updated[slot(id)];
+        }
+    }
+    
+    /**
+     * Immutable, column-oriented copy of the store. Records are in id order
+     * and are only turned into JSONObjects when iterated or fetched with
+     * {@link #get(int)}.
+     */
+    public static class Snapshot implements Iterable<JSONObject>
+    {
+        private final long version;
+        private final long next;
+        private final int size;
+        private final long[] ids;
+        private final long[] created;
+        private final long[] updated;
+        private final byte[] states;
+        private final String[] texts;
+        private final ConcurrentHashMap<Object,Object> cache = new ConcurrentHashMap<>();
+        
+        Snapshot(long version, long next, int size, long[] ids, long[] created, long[] updated, byte[] states, String[] texts)
+        {
+            this.version = version;
+            this.next = next;
+            this.size = size;
+            this.ids = ids;
+            this.created = created;
+            this.updated = updated;
+            this.states = states;
+            this.texts = texts;
+        }
+        
+        public long getVersion()
+        {
+            return version;
+        }
+        
+        /**
+         * Obtains a value derived from this snapshot, computing it on first
+         * use. Snapshots are replaced whenever the store changes, so cached
+         * values never outlive the version they were computed from. Concurrent
+         * callers asking for the same key share a single computation.
+         *
+         * @param <T> type of the cached value
+         * @param key identifies the derived value, including any arguments
+         * @param function computes the value from this snapshot
+         * @return the cached or newly computed value
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T cached(Object key, Function<Snapshot,T> function)
+        {
+            // Keys that include a time bucket would otherwise accumulate
+            if(cache.size() >= MAX_CACHED) cache.clear();
+            
+            return (T)cache.computeIfAbsent(key, unused -> function.apply(this));
+        }
+        
+        /**
+         * The id that will be assigned to the next inserted record
+         *
+         * @return the next id
+         */
+        public long getNext()
+        {
+            return next;
+        }
+        
+        public int size()
+        {
+            return size;
+        }
+        
+        public long getId(int index)
+        {
+            return ids[index];
+        }
+        
+        public String getText(int index)
+        {
+            return texts[index];
+        }
+        
+        public Status getState(int index)
+        {
+            return STATES[states[index]];
+        }
+        
+        public long getCreated(int index)
+        {
+            return created[index];
+        }
+        
+        public long getUpdated(int index)
+        {
+            return updated[index];
+        }
+        
+        /**
+         * Finds the position of a record in the snapshot
+         *
+         * @param id the id of the record
+         * @return the index of the record or -1 if it is not present
+         */
+        public int find(long id)
+        {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            
+            return (index < 0) ? -1 : index;
+        }
+        
+        /**
+         * Creates a new JSONObject for the record at the given position
+         *
+         * @param index position of the record in the snapshot
+         * @return a new JSONObject holding the record
+         */
+        public JSONObject get(int index)
+        {
+            var todo = new JSONObject();
+            
+            todo.put("id", ids[index]);
+            todo.put("text", texts[index]);
+            todo.put("state", STATES[states[index]].toString());
+            todo.put("created", created[index]);
+            todo.put("updated", updated[index]);
+            
+            return todo;
+        }
+        
+        /**
+         * Records with ids greater than the cursor in id order. Passing the
+         * id of the last record of a page as the cursor returns the next page.
+         *
+         * @param after the cursor, or zero to start from the first record
+         * @param limit the maximum number of records to return
+         * @return the records of the page
+         */
+        public Iterable<JSONObject> page(long after, int limit)
+        {
+            int index = Arrays.binarySearch(ids, 0, size, after);
+            int start = (index < 0) ? -(index + 1) : index + 1;
+            int end = (int)Math.min(size, (long)start + Math.max(0, limit));
+            
+            return () -> iterator(start, end);
+        }
+        
+        @Override
+        public Iterator<JSONObject> iterator()
+        {
+            return iterator(0, size);
+        }
+        
+        private Iterator<JSONObject> iterator(int start, int end)
+        {
+            return new Iterator<JSONObject>() {
+                private int index = start;
+                
+                @Override
+                public boolean hasNext()
+                {
+                    return (index < end);
+                }
+                
+                @Override
+                public JSONObject next()
+                {
+                    if(index >= end) throw new NoSuchElementException();
+                    
+                    return get(index++);
+                }
+            };
+        }
+    }
+}
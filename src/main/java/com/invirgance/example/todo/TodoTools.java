@@ -23,15 +23,20 @@
  */
 package com.invirgance.example.todo;
 
-import com.invirgance.convirgance.ConvirganceException;
 import com.invirgance.convirgance.ai.annotations.Tool;
 import com.invirgance.convirgance.ai.annotations.ToolParam;
 import com.invirgance.convirgance.json.JSONArray;
 import com.invirgance.convirgance.json.JSONObject;
-import com.invirgance.convirgance.transform.IdentityTransformer;
 import com.invirgance.convirgance.wiring.annotation.Wiring;
+import com.invirgance.example.metrics.ToolMetrics;
+import com.invirgance.example.transform.TopTransformer;
 import static com.invirgance.example.todo.TodoList.Status;
+import static com.invirgance.example.transform.TopTransformer.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  *
@@ -46,158 +51,190 @@ public class TodoTools
     private static final long DAY = HOUR * 24;
     private static final long YEAR = DAY * 365;
     
-    private static boolean isNumber(String value)
+    private static final Comparator<JSONObject> NEWEST = descending("created").thenComparing(descending("id"));
+    private static final Comparator<JSONObject> OLDEST = ascending("created").thenComparing(ascending("id"));
+    private static final Comparator<JSONObject> RECENTLY_UPDATED = descending("updated").thenComparing(descending("id"));
+    
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(StringBuilder::new);
+    private static final int MAX_BUFFER = 1024 * 1024;
+    
+    // Rough size of a token for English text, used to enforce prompt budgets
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int SUMMARY_RESERVE = 200;
+    private static final int MAX_RESULTS = 50;
+    
+    private static String transformDate(long date)
     {
-        if(value.length() < 1) return false;
+        var buffer = new StringBuilder(32);
         
-        for(int i=0; i<value.length(); i++)
-        {
-            if(!Character.isDigit(value.charAt(i))) return false;
-        }
+        appendDate(buffer, date, System.currentTimeMillis());
         
-        return true;
+        return buffer.toString();
     }
     
-    private static String transformDate(long date)
+    /**
+     * Appends the time elapsed since a date in a human readable form such as
+     * "2 days, 3 hours ago". Seconds are only included when fewer than two
+     * larger units are present.
+     *
+     * @param buffer the builder to append to
+     * @param date the date in milliseconds since the epoch
+     * @param now the current time in milliseconds since the epoch
+     */
+    private static void appendDate(StringBuilder buffer, long date, long now)
     {
-        StringBuffer text = new StringBuffer();
-        JSONArray<String> components = new JSONArray<>();
-        
-        long delta = System.currentTimeMillis() - date;
-        long years = 0;
-        long days = 0;
-        long hours = 0;
-        long minutes = 0;
+        long delta = Math.max(0, now - date);
+        int start = buffer.length();
+        int components = 0;
         
-        while(delta > YEAR) { years++; delta -= YEAR; }
-        while(delta > DAY) { days++; delta -= DAY; }
-        while(delta > HOUR) { hours++; delta -= HOUR; }
-        while(delta > MINUTE) { minutes++; delta -= MINUTE; }
+        components += appendUnit(buffer, start, delta / YEAR, "year");
+        components += appendUnit(buffer, start, (delta % YEAR) / DAY, "day");
+        components += appendUnit(buffer, start, (delta % DAY) / HOUR, "hour");
+        components += appendUnit(buffer, start, (delta % HOUR) / MINUTE, "minute");
         
-        if(years > 0)
-        {
-            text.append(years).append(" ").append((years > 1) ? "years" : "year");
-            components.add(text.toString());
-            text.setLength(0);
-        }
+        if(components < 2) appendUnit(buffer, start, (delta % MINUTE) / SECOND, "second");
         
-        if(days > 0)
-        {
-            text.append(days).append(" ").append((days > 1) ? "days" : "day");
-            components.add(text.toString());
-            text.setLength(0);
-        }
+        if(buffer.length() == start) buffer.append("Just now");
+        else buffer.append(" ago");
+    }
+    
+    private static int appendUnit(StringBuilder buffer, int start, long value, String unit)
+    {
+        if(value < 1) return 0;
+        if(buffer.length() > start) buffer.append(", ");
         
-        if(hours > 0)
-        {
-            text.append(hours).append(" ").append((hours > 1) ? "hours" : "hour");
-            components.add(text.toString());
-            text.setLength(0);
-        }
+        buffer.append(value).append(' ').append(unit);
         
-        if(minutes > 0)
-        {
-            text.append(minutes).append(" ").append((minutes > 1) ? "minutes" : "minute");
-            components.add(text.toString());
-            text.setLength(0);
-        }
+        if(value > 1) buffer.append('s');
         
-        for(String component : components)
-        {
-            if(text.length() > 0) text.append(", ");
-            
-            text.append(component);
-        }
+        return 1;
+    }
+    
+    private static StringBuilder buffer()
+    {
+        var buffer = BUFFER.get();
         
-        if(components.size() < 2 && delta > SECOND)
+        // Don't hold on to the memory of an unusually large table
+        if(buffer.capacity() > MAX_BUFFER)
         {
-            if(text.length() > 0) text.append(", ");
-            
-            text.append((delta / SECOND)).append(" ").append(((delta / SECOND) > 1) ? "second" : "seconds");
+            buffer = new StringBuilder();
+            BUFFER.set(buffer);
         }
         
-        if(text.length() < 1) text.append("Just now");
-        else text.append(" ago");
+        buffer.setLength(0);
         
-        return text.toString();
+        return buffer;
     }
     
-    private Iterable<JSONObject> getTasks()
+    /**
+     * Interval in milliseconds at which a summary of the tool calls is
+     * written to the standard out debug log. Zero disables the summary. The
+     * same metrics are always available at /services/metrics.
+     *
+     * @return the print interval in milliseconds
+     */
+    public long getDumpInterval()
     {
-        return new IdentityTransformer() {
-            @Override
-            public JSONObject transform(JSONObject record) throws ConvirganceException
-            {
-                if(record.getLong("created") == record.getLong("updated")) record.put("updated", "Not updated");
-                else record.put("updated", transformDate(record.getLong("updated")));
-                
-                record.put("created", transformDate(record.getLong("created")));
-                
-                return record;
-            }
-        }.transform(TodoList.list());
+        return ToolMetrics.getDumpInterval();
+    }
+    
+    public void setDumpInterval(long dumpInterval)
+    {
+        ToolMetrics.setDumpInterval(dumpInterval);
     }
     
     @Tool("Get a count of all tasks regardless of state")
     public int countAllTasks()
     {
-        var count = 0;
-        
-        for(var item : getTasks()) count++;
-        
-        return count;
+        return TodoList.count();
     }
     
     @Tool("Get a count of tasks for a state")
     public int count(
             @ToolParam("State to filter the task list by") Status state)
     {
-        var count = 0;
-        var value = state.toString();
-        
-        for(var item : getTasks()) 
-        {
-            if(item.getString("state").equals(value))
-            {
-                count++;
-            }
-        }
+        return TodoList.count(state);
+    }
+    
+    /**
+     * Memoizes the result of a read-only tool against the current snapshot of
+     * the selected list. Any write produces a new snapshot, so results are
+     * invalidated automatically by the mutating tools. Since the results
+     * contain relative times, they are also only reused within the same
+     * minute.
+     *
+     * @param method name of the tool
+     * @param function computes the result from the snapshot
+     * @param arguments the arguments passed to the tool
+     * @return the cached or newly computed result
+     */
+    private static String cached(String method, Function<TodoStore.Snapshot,String> function, Object... arguments)
+    {
+        long bucket = System.currentTimeMillis() / MINUTE;
         
-        return count;
+        return TodoList.list().cached(List.of(method, bucket, Arrays.asList(arguments)), function);
     }
     
     @Tool("Returns the complete list of tasks")
     public String listTasks()
     {
-        var list = new JSONArray<JSONObject>();
-        
-        for(var item : getTasks()) 
-        {   
-            list.add(item);
-        }
-        
-        list = new JSONArray<>(list.reversed());
-        
-        return table(list, true);
+        return cached("listTasks", snapshot -> {
+            var buffer = buffer();
+            long now = System.currentTimeMillis();
+            
+            appendHeader(buffer, true);
+            
+            for(int i=snapshot.size()-1; i>=0; i--)
+            {
+                appendRow(buffer, snapshot.getId(i), snapshot.getText(i), snapshot.getState(i), snapshot.getCreated(i), snapshot.getUpdated(i), true, now);
+            }
+            
+            appendFooter(buffer, snapshot.size());
+            
+            return buffer.toString();
+        });
     }
     
     @Tool("Obtains a list of all tasks in the requested state")
     public String listTasksByState(
             @ToolParam("The state of the desired tasks") Status state)
     {
-        var results = new JSONArray<JSONObject>();
-        
-        for(var record : getTasks())
-        {
-            if(record.getString("state").equals(state.toString()))
+        return cached("listTasksByState", snapshot -> {
+            var list = new JSONArray<JSONObject>();
+            
+            for(int i=0; i<snapshot.size(); i++)
             {
-                results.add(record);
+                if(snapshot.getState(i) == state) list.add(snapshot.get(i));
             }
+            
+            return table(list, true);
+        }, state);
+    }
+    
+    @Tool("Finds tasks whose description contains all of the given words. Parts of words also match. Use this instead of listing all tasks when looking for specific or similar tasks.")
+    public String searchTasks(
+            @ToolParam("Words to search for, separated by spaces") String query)
+    {
+        var results = TodoList.search(query, MAX_RESULTS + 1);
+        
+        if(results.size() > MAX_RESULTS)
+        {
+            results.remove(MAX_RESULTS);
+            
+            return table(results, true) + "\nOnly the first " + MAX_RESULTS + " matches are shown. Add words to narrow the search.\n";
         }
         
         return table(results, true);
     }
     
+    @Tool("Finds the tasks most related to a task, based on the words in their descriptions. Returns the most related first.")
+    public String findRelatedTasks(
+            @ToolParam("Numeric identifier of the task to compare against") long id,
+            @ToolParam("Number of tasks to return") int count)
+    {
+        return table(TodoList.related(id, Math.min(count, MAX_RESULTS)), true);
+    }
+    
     @Tool("Returns the newest task")
     public String newest()
     {
@@ -208,31 +245,7 @@ public class TodoTools
     public String newestList(
             @ToolParam("Number of tasks to return. Pass 1 if you only need to know the newest.") int count)
     {
-        var list = new JSONArray<JSONObject>();
-        var results = new JSONArray<JSONObject>();
-        
-        for(var record : TodoList.list()) list.add(record);
-        
-        list.sort(new Comparator<JSONObject>() {
-            @Override
-            public int compare(JSONObject left, JSONObject right)
-            {
-                return (int)(right.getLong("created") - left.getLong("created"));
-            }
-        });
-        
-        for(var item : list)
-        {
-            if(item.getLong("created") == item.getLong("updated")) item.put("updated", "Not updated");
-            else item.put("updated", transformDate(item.getLong("updated")));
-            
-            item.put("created", transformDate(item.getLong("created")));
-            results.add(item);
-            
-            if(results.size() >= count) break;
-        }
-
-        return table(results, true);
+        return cached("newestList", snapshot -> table(new TopTransformer(NEWEST, Math.min(count, MAX_RESULTS)).transform(snapshot), true), count);
     }
     
     @Tool("Returns the oldest task")
@@ -245,31 +258,7 @@ public class TodoTools
     public String oldestList(
             @ToolParam("Number of tasks to return. Pass 1 if you only need to know the oldest.") int count)
     {
-        var list = new JSONArray<JSONObject>();
-        var results = new JSONArray<JSONObject>();
-        
-        for(var record : TodoList.list()) list.add(record);
-        
-        list.sort(new Comparator<JSONObject>() {
-            @Override
-            public int compare(JSONObject left, JSONObject right)
-            {
-                return (int)(left.getLong("created") - right.getLong("created"));
-            }
-        });
-        
-        for(var item : list)
-        {
-            if(item.getLong("created") == item.getLong("updated")) item.put("updated", "Not updated");
-            else item.put("updated", transformDate(item.getLong("updated")));
-            
-            item.put("created", transformDate(item.getLong("created")));
-            results.add(item);
-            
-            if(results.size() >= count) break;
-        }
-
-        return table(results, true);
+        return cached("oldestList", snapshot -> table(new TopTransformer(OLDEST, Math.min(count, MAX_RESULTS)).transform(snapshot), true), count);
     }
     
     @Tool("Returns the most recently updated task")
@@ -278,35 +267,11 @@ public class TodoTools
         return mostRecentlyUpdatedList(1);
     }
     
-    @Tool("Returns the most recently updated tasks in order of creation")
+    @Tool("Returns the most recently updated tasks, most recent first")
     public String mostRecentlyUpdatedList(
             @ToolParam("Number of tasks to return. Pass 1 if you only need to know the newest.") int count)
     {
-        var list = new JSONArray<JSONObject>();
-        var results = new JSONArray<JSONObject>();
-        
-        for(var record : TodoList.list()) list.add(record);
-        
-        list.sort(new Comparator<JSONObject>() {
-            @Override
-            public int compare(JSONObject left, JSONObject right)
-            {
-                return (int)(right.getLong("created") - left.getLong("created"));
-            }
-        });
-        
-        for(var item : list)
-        {
-            if(item.getLong("created") == item.getLong("updated")) item.put("updated", "Not updated");
-            else item.put("updated", transformDate(item.getLong("updated")));
-            
-            item.put("created", transformDate(item.getLong("created")));
-            results.add(item);
-            
-            if(results.size() >= count) break;
-        }
-
-        return table(results, true);
+        return cached("mostRecentlyUpdatedList", snapshot -> table(new TopTransformer(RECENTLY_UPDATED, Math.min(count, MAX_RESULTS)).transform(snapshot), true), count);
     }
     
     @Tool("Creates a new todo task. This is an irreversible task, so only call when you intend to create a task. Returns the details of the created task.")
@@ -314,19 +279,53 @@ public class TodoTools
             @ToolParam("Description or title of the task") String task)
     {
         long id = TodoList.insert(task);
+        JSONObject record;
         
         if(id < 0) return "Unable to create task. List is full. User needs to complete or cancel tasks first.";
         
-        return getTask(id);
+        // Read the record directly. The snapshot is stale after the insert.
+        record = TodoList.get(id);
+        
+        return table((record == null) ? new JSONArray<>() : new JSONArray<>(record), false);
+    }
+    
+    @Tool("Creates several new todo tasks at once. This is an irreversible task, so only call when you intend to create the tasks. Returns the details of the created tasks.")
+    public String createTasks(
+            @ToolParam("Descriptions or titles of the tasks, one task per line") String tasks)
+    {
+        var texts = new ArrayList<String>();
+        var results = new JSONArray<JSONObject>();
+        var failed = 0;
+        JSONObject record;
+        
+        for(var line : tasks.split("\n"))
+        {
+            if(!line.isBlank()) texts.add(line.strip());
+        }
+        
+        for(long id : TodoList.insert(texts))
+        {
+            if(id < 0) failed++;
+            else if((record = TodoList.get(id)) != null) results.add(record);
+        }
+        
+        if(failed > 0 && results.isEmpty()) return "Unable to create tasks. List is full. User needs to complete or cancel tasks first.";
+        if(failed > 0) return table(results, false) + "\nUnable to create " + failed + " of the tasks. List is full. User needs to complete or cancel tasks first.\n";
+        
+        return table(results, false);
     }
     
     @Tool("Get a task by its numeric identifier")
     public String getTask(
             @ToolParam("Numeric identifier for the task") long id)
     {
-        JSONObject record = TodoList.get(id);
-        
-        return table(new JSONArray<JSONObject>(record), false);
+        return cached("getTask", snapshot -> {
+            int index = snapshot.find(id);
+            
+            if(index < 0) return table(new JSONArray<>(), false);
+            
+            return table(new JSONArray<>(snapshot.get(index)), false);
+        }, id);
     }
     
     @Tool("Updates the state of a task. Returns the details of the updated task.")
@@ -344,6 +343,43 @@ public class TodoTools
         return result.toString();
     }
     
+    @Tool("Updates the state of several tasks at once. Returns the details of the updated tasks.")
+    public String updateTasks(
+            @ToolParam("Numeric identifiers of the tasks to update, separated by commas") String ids,
+            @ToolParam("The new state for the tasks") Status state)
+    {
+        var values = ids.strip().split("[,\\s]+");
+        var keys = new long[values.length];
+        var invalid = new ArrayList<String>();
+        var count = 0;
+        JSONArray<JSONObject> results;
+        
+        for(var value : values)
+        {
+            if(value.isEmpty()) continue;
+            
+            try
+            {
+                keys[count] = Long.parseLong(value);
+                count++;
+            }
+            catch(NumberFormatException e)
+            {
+                invalid.add(value);
+            }
+        }
+        
+        // Don't guess at what was meant for an irreversible change
+        if(!invalid.isEmpty()) return "No tasks were updated. These are not valid task ids: " + String.join(", ", invalid);
+        
+        results = TodoList.update(Arrays.copyOf(keys, count), state);
+        
+        if(results.isEmpty()) return "Unable to update tasks with ids " + ids;
+        if(results.size() < count) return table(results, true) + "\nUnable to update " + (count - results.size()) + " of the tasks. Check the ids.\n";
+        
+        return table(results, true);
+    }
+    
     @Tool("Updates the state of the most recently created task. Returns the details of the updated task.")
     public String updateMostRecentTask(
             @ToolParam("The new state for the task") Status state)
@@ -386,49 +422,155 @@ public class TodoTools
         return table(new JSONArray<>(recent), true);
     }
     
-    public static String table(Iterable<JSONObject> todos, boolean extended)
+    /**
+     * Renders a snapshot as a markdown table. The rendering is cached on the
+     * snapshot so repeated requests against an unchanged list reuse it.
+     * Extended tables contain relative times, so they are only reused within
+     * the same minute.
+     *
+     * @param snapshot the records to render
+     * @param extended true to include the created and updated columns
+     * @return the rendered table
+     */
+    public static String table(TodoStore.Snapshot snapshot, boolean extended)
     {
-        StringBuffer buffer = new StringBuffer();
-        int count = 0;
-        
-        buffer.append("\n");
-        buffer.append("| ID | Task | State |");
-        
-        if(extended) buffer.append(" | Created | Updated |\n");
-        else buffer.append("\n");
+        long bucket = extended ? System.currentTimeMillis() / MINUTE : 0;
         
-        buffer.append("|----|------|-------|");
-        
-        if(extended) buffer.append(" |---------|---------|\n");
-        else buffer.append("\n");
-        
-        for(var record : todos)
-        {
-            buffer.append("| ").append(record.getString("id"));
-            buffer.append(" | ").append(record.getString("text"));
-            buffer.append(" | ").append(record.getString("state"));
+        return snapshot.cached(List.of("table", extended, bucket), records -> {
+            var buffer = buffer();
+            long now = System.currentTimeMillis();
+            
+            appendHeader(buffer, extended);
+            
+            for(int i=0; i<records.size(); i++)
+            {
+                appendRow(buffer, records.getId(i), records.getText(i), records.getState(i), records.getCreated(i), records.getUpdated(i), extended, now);
+            }
             
-            if(extended)
+            appendFooter(buffer, records.size());
+            
+            return buffer.toString();
+        });
+    }
+    
+    /**
+     * Renders the open tasks of a snapshot in a terse form intended for a
+     * prompt. Closed tasks are only counted, rows are written newest first,
+     * and rows that would exceed the token budget are replaced by a note
+     * telling the model to look them up with the tools. The result is cached
+     * on the snapshot.
+     *
+     * @param snapshot the records to render
+     * @param budget approximate maximum number of tokens to produce
+     * @return the rendered list
+     */
+    public static String compact(TodoStore.Snapshot snapshot, int budget)
+    {
+        return snapshot.cached(List.of("compact", budget), records -> {
+            var buffer = buffer();
+            var states = Status.values();
+            var counts = new int[states.length];
+            int limit = Math.max(0, budget * CHARS_PER_TOKEN - SUMMARY_RESERVE);
+            int open = 0;
+            int shown = 0;
+            int mark;
+            
+            for(int i=0; i<records.size(); i++) counts[records.getState(i).ordinal()]++;
+            for(var state : states) if(!state.isDone()) open += counts[state.ordinal()];
+            
+            if(open > 0) buffer.append("Open tasks, newest first (id|state|task):\n");
+            else buffer.append("There are no open tasks.\n");
+            
+            for(int i=records.size()-1; i>=0 && shown<open; i--)
             {
-                if(isNumber(record.getString("created")))
+                if(records.getState(i).isDone()) continue;
+                
+                mark = buffer.length();
+                
+                buffer.append(records.getId(i)).append('|').append(records.getState(i)).append('|').append(records.getText(i)).append('\n');
+                
+                if(buffer.length() > limit)
                 {
-                    if(record.getLong("created") == record.getLong("updated")) record.put("updated", "Not updated");
-                    else record.put("updated", transformDate(record.getLong("updated")));
-
-                    record.put("created", transformDate(record.getLong("created")));
+                    buffer.setLength(mark);
+                    break;
                 }
                 
-                buffer.append(" | ").append(record.getString("created"));
-                buffer.append(" | ").append(record.getString("updated"));
+                shown++;
+            }
+            
+            if(shown < open) buffer.append("(").append(open - shown).append(" older open tasks not shown. Use the tools to look them up.)\n");
+            
+            buffer.append("Totals:");
+            
+            for(var state : states)
+            {
+                buffer.append(' ').append(counts[state.ordinal()]).append(' ').append(state);
+                
+                if(state.ordinal() < states.length - 1) buffer.append(',');
             }
             
-            buffer.append(" |\n");
+            buffer.append(". Closed tasks are not listed; use the tools to look them up.\n");
             
+            return buffer.toString();
+        });
+    }
+    
+    public static String table(Iterable<JSONObject> todos, boolean extended)
+    {
+        var buffer = buffer();
+        long now = System.currentTimeMillis();
+        int count = 0;
+        
+        appendHeader(buffer, extended);
+        
+        for(var record : todos)
+        {
+            appendRow(buffer, record.getLong("id"), record.getString("text"), record.getString("state"), record.getLong("created"), record.getLong("updated"), extended, now);
             count++;
         }
         
-        if(count < 1) buffer.append("\nThere are no tasks in the todo list.\n");
+        appendFooter(buffer, count);
         
         return buffer.toString();
     }
+    
+    private static void appendHeader(StringBuilder buffer, boolean extended)
+    {
+        buffer.append("\n");
+        
+        if(extended)
+        {
+            buffer.append("| ID | Task | State | Created | Updated |\n");
+            buffer.append("|----|------|-------|---------|---------|\n");
+        }
+        else
+        {
+            buffer.append("| ID | Task | State |\n");
+            buffer.append("|----|------|-------|\n");
+        }
+    }
+    
+    private static void appendRow(StringBuilder buffer, long id, String text, Object state, long created, long updated, boolean extended, long now)
+    {
+        buffer.append("| ").append(id);
+        buffer.append(" | ").append(text);
+        buffer.append(" | ").append(state);
+        
+        if(extended)
+        {
+            buffer.append(" | ");
+            appendDate(buffer, created, now);
+            buffer.append(" | ");
+            
+            if(created == updated) buffer.append("Not updated");
+            else appendDate(buffer, updated, now);
+        }
+        
+        buffer.append(" |\n");
+    }
+    
+    private static void appendFooter(StringBuilder buffer, int count)
+    {
+        if(count < 1) buffer.append("\nThere are no tasks in the todo list.\n");
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2025 INVIRGANCE LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.invirgance.example.transform;
+
+import com.invirgance.convirgance.ConvirganceException;
+import com.invirgance.convirgance.json.JSONObject;
+import com.invirgance.convirgance.transform.Transformer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Selects the first <i>count</i> records of a stream in comparator order
+ * without sorting the entire stream. A bounded heap holds the best records
+ * seen so far, so selection is a single O(n log k) pass using O(min(n, k))
+ * memory. Records are emitted in comparator order.
+ *
+ * @author jbanes
+ */
+public class TopTransformer implements Transformer
+{
+    private final Comparator<JSONObject> comparator;
+    private final int count;
+    
+    public TopTransformer(Comparator<JSONObject> comparator, int count)
+    {
+        this.comparator = comparator;
+        this.count = count;
+    }
+    
+    /**
+     * Orders records by a numeric field from largest to smallest
+     *
+     * @param key the field to compare
+     * @return a comparator placing the largest values first
+     */
+    public static Comparator<JSONObject> descending(String key)
+    {
+        return (left, right) -> Long.compare(right.getLong(key), left.getLong(key));
+    }
+    
+    /**
+     * Orders records by a numeric field from smallest to largest
+     *
+     * @param key the field to compare
+     * @return a comparator placing the smallest values first
+     */
+    public static Comparator<JSONObject> ascending(String key)
+    {
+        return (left, right) -> Long.compare(left.getLong(key), right.getLong(key));
+    }
+    
+    @Override
+    public Iterator<JSONObject> transform(Iterator<JSONObject> iterator) throws ConvirganceException
+    {
+        // The head of the heap is the worst record currently retained. The
+        // heap grows as records arrive, so a large count does not allocate
+        // more than the stream holds.
+        var heap = new PriorityQueue<JSONObject>(comparator.reversed());
+        JSONObject[] results;
+        JSONObject record;
+        
+        if(count < 1) return Arrays.<JSONObject>asList().iterator();
+        
+        while(iterator.hasNext())
+        {
+            record = iterator.next();
+            
+            if(heap.size() < count) heap.add(record);
+            else if(comparator.compare(record, heap.peek()) < 0)
+            {
+                heap.poll();
+                heap.add(record);
+            }
+        }
+        
+        results = new JSONObject[heap.size()];
+        
+        for(int i=results.length-1; i>=0; i--) results[i] = heap.poll();
+        
+        return Arrays.asList(results).iterator();
+    }
+}